@@ -23,7 +23,7 @@ public class BoardDrawer {
         for (int row = startRow; row != endRow; row += rowStep) {
             printBorderNum(row + 1);
             for (int col = startCol; col != endCol; col +=colStep) {
-                ChessPiece piece = board.getPiece(new ChessPosition(row + 1, col + 1));
+                ChessPiece piece = board.getPiece(ChessPosition.of(row + 1, col + 1));
 
                 if ((row + col) % 2 == 0) {
                     setDark(false);
@@ -55,7 +55,7 @@ public class BoardDrawer {
         for (int row = startRow; row != endRow; row += rowStep) {
             printBorderNum(row + 1);
             for (int col = startCol; col != endCol; col +=colStep) {
-                ChessPosition position = new ChessPosition(row + 1, col + 1);
+                ChessPosition position = ChessPosition.of(row + 1, col + 1);
 
                 for (ChessMove move : validMoves) {
                     if (move.getEndPosition().equals(position)) {
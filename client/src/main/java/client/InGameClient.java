@@ -4,14 +4,19 @@ import chess.ChessGame;
 import chess.ChessMove;
 import chess.ChessPiece;
 import chess.ChessPosition;
+import chess.InvalidMoveException;
+import engine.OpeningBook;
 import jakarta.websocket.DeploymentException;
 import websocket.messages.ErrorMessage;
 import websocket.messages.LoadGameMessage;
+import websocket.messages.MoveUpdateMessage;
 import websocket.messages.NotificationMessage;
 import websocket.messages.ServerMessage;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Scanner;
 
@@ -23,6 +28,7 @@ public class InGameClient implements ReplClient, ServerMessageObserver {
     private WebSocketFacade ws;
     private final boolean isPlayer;
     private ChessGame currentGame;
+    private OpeningBook book;
 
     public InGameClient(Repl repl) {
         this.repl = repl;
@@ -41,6 +47,7 @@ public class InGameClient implements ReplClient, ServerMessageObserver {
                 case "highlight" -> highlightLegalMoves(params);
                 case "resign" -> resign(params);
                 case "move" -> makeMove(params);
+                case "hint" -> hint(params);
                 case "quit" -> "quit";
                 default -> help();
             };
@@ -104,7 +111,7 @@ public class InGameClient implements ReplClient, ServerMessageObserver {
 
 
 
-            ChessMove move = new ChessMove(startPos, endPos, promotionPiece);
+            ChessMove move = ChessMove.of(startPos, endPos, promotionPiece);
 
             ws.makeMove(repl.authToken, repl.gameId, move);
             return "";
@@ -161,6 +168,39 @@ public class InGameClient implements ReplClient, ServerMessageObserver {
         return "";
     }
 
+    private String hint(String[] params) {
+        if (params.length != 0) {
+            return "hint command takes no input";
+        }
+        if (currentGame == null) {
+            return "no game to give a hint for";
+        }
+
+        OpeningBook openingBook = localBook();
+        if (openingBook == null) {
+            // the server always has a book; its answer comes back as a notification
+            ws.hint(repl.authToken, repl.gameId);
+            return "";
+        }
+        return OpeningBook.describe(openingBook.lookup(currentGame));
+    }
+
+    /**
+     * @return the book named by the chess.book property or found at book.bin, looked up here
+     * without asking the server, or null if there isn't one
+     */
+    private OpeningBook localBook() {
+        if (book == null && (System.getProperty(OpeningBook.PROPERTY) != null
+                || Files.isRegularFile(Path.of(OpeningBook.DEFAULT_FILE)))) {
+            try {
+                book = OpeningBook.openDefault();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return book;
+    }
+
     private String redraw(String[] params) {
         if (params.length != 0) {
             return "redraw command takes no input";
@@ -189,6 +229,7 @@ public class InGameClient implements ReplClient, ServerMessageObserver {
         return """
                 highlight <Piece Position> - highlight all legal moves for a given piece
                 move <Start Position> <End Position> - make a move!
+                hint - show the opening book's moves for this position
                 resign - forfeit the chess match
                 leave - go back to menu (doesn't forfeit the game)
                 quit - Exit application
@@ -210,7 +251,7 @@ public class InGameClient implements ReplClient, ServerMessageObserver {
             throw new ResponseException("invalid move");
         }
 
-        return new ChessPosition(row, col);
+        return ChessPosition.of(row, col);
     }
 
     public void enter() {
@@ -234,6 +275,7 @@ public class InGameClient implements ReplClient, ServerMessageObserver {
                 System.out.println();
 
                 BoardDrawer.drawBoard(loadGame.getGame().getBoard(), repl.white);
+                System.out.printf("Evaluation: %+.2f%n", loadGame.getEvaluation() / 100.0);
             }
             case ERROR -> {
                 ErrorMessage error = (ErrorMessage) message;
@@ -247,6 +289,46 @@ public class InGameClient implements ReplClient, ServerMessageObserver {
                 System.out.println();
                 System.out.println(noti.getMessage());
             }
+            case MOVE_UPDATE -> {
+                MoveUpdateMessage update = (MoveUpdateMessage) message;
+                if (currentGame != null && update.getSequence() <= MoveUpdateMessage.sequence(currentGame)) {
+                    // already have this move, from a resync that crossed it
+                    return;
+                }
+                if (!applyUpdate(update)) {
+                    // missed a move or fell out of step with the server, so get the whole game
+                    ws.resync(repl.authToken, repl.gameId);
+                    return;
+                }
+
+                System.out.println();
+
+                BoardDrawer.drawBoard(currentGame.getBoard(), repl.white);
+                System.out.printf("Evaluation: %+.2f%n", currentGame.evaluate() / 100.0);
+            }
+        }
+    }
+
+    /**
+     * Plays an update's move on a copy of the current game, so the game being drawn never
+     * changes under the prompt, and swaps the copy in if it ends up where the server says
+     *
+     * @return True if the move followed on from the current game and was applied
+     */
+    private boolean applyUpdate(MoveUpdateMessage update) {
+        if (currentGame == null || update.getSequence() != MoveUpdateMessage.sequence(currentGame) + 1) {
+            return false;
+        }
+        ChessGame next = new ChessGame(currentGame);
+        try {
+            next.makeMove(update.getMove());
+        } catch (InvalidMoveException e) {
+            return false;
+        }
+        if (next.status() != update.getStatus()) {
+            return false;
         }
+        currentGame = next;
+        return true;
     }
 }
@@ -1,59 +1,115 @@
 package client;
 
+import chess.ChessAdapters;
 import chess.ChessMove;
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import jakarta.websocket.*;
+import websocket.BinaryCodec;
 import websocket.commands.UserGameCommand;
 import websocket.messages.ErrorMessage;
 import websocket.messages.LoadGameMessage;
+import websocket.messages.MoveUpdateMessage;
 import websocket.messages.NotificationMessage;
 import websocket.messages.ServerMessage;
 
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 
 @ClientEndpoint
 public class WebSocketFacade {
+    // must match the server's encoding of games, see ChessAdapters
+    private static final Gson GSON = ChessAdapters.register(new GsonBuilder()).create();
+
     public Session session;
+    // talking to the server in binary frames instead of JSON, see BinaryCodec
+    private final boolean binary;
 
+    /**
+     * Connects asking for move updates, with JSON messages, or with binary frames if the
+     * chess.encoding system property is "binary"
+     */
     public WebSocketFacade(String serverUrl, ServerMessageObserver observer) throws URISyntaxException, DeploymentException, IOException {
+        this(serverUrl, observer, BinaryCodec.BINARY.equals(System.getProperty("chess.encoding")), true);
+    }
+
+    /**
+     * @param binary      True to talk in binary frames instead of JSON
+     * @param moveUpdates True to be sent just the move after each move instead of the whole game,
+     *                    in which case the observer has to handle MOVE_UPDATE messages
+     */
+    public WebSocketFacade(String serverUrl, ServerMessageObserver observer, boolean binary, boolean moveUpdates)
+            throws URISyntaxException, DeploymentException, IOException {
         String urlServer = serverUrl.replace("http", "ws");
+        this.binary = binary;
 
-        URI socketURI = new URI(urlServer + "/ws");
+        String query = "";
+        if (binary) {
+            query = "?" + BinaryCodec.QUERY;
+        }
+        if (moveUpdates) {
+            query += (query.isEmpty() ? "?" : "&") + MoveUpdateMessage.QUERY;
+        }
+        URI socketURI = new URI(urlServer + "/ws" + query);
         WebSocketContainer container = ContainerProvider.getWebSocketContainer();
         this.session = container.connectToServer(this, socketURI);
 
         this.session.addMessageHandler(new MessageHandler.Whole<String>() {
             @Override
             public void onMessage(String message) {
-                ServerMessage serverMessage = new Gson().fromJson(message, ServerMessage.class);
+                ServerMessage serverMessage = GSON.fromJson(message, ServerMessage.class);
 
                 switch (serverMessage.getServerMessageType()) {
                     case LOAD_GAME -> {
-                        LoadGameMessage loadGameMessage = new Gson().fromJson(message, LoadGameMessage.class);
+                        LoadGameMessage loadGameMessage = GSON.fromJson(message, LoadGameMessage.class);
                         observer.notify(loadGameMessage);
                     }
                     case ERROR -> {
-                        ErrorMessage errorMessage = new Gson().fromJson(message, ErrorMessage.class);
+                        ErrorMessage errorMessage = GSON.fromJson(message, ErrorMessage.class);
                         observer.notify(errorMessage);
                     }
                     case NOTIFICATION -> {
-                        NotificationMessage notificationMessage = new Gson().fromJson(message, NotificationMessage.class);
+                        NotificationMessage notificationMessage = GSON.fromJson(message, NotificationMessage.class);
                         observer.notify(notificationMessage);
                     }
+                    case MOVE_UPDATE -> {
+                        MoveUpdateMessage moveUpdateMessage = GSON.fromJson(message, MoveUpdateMessage.class);
+                        observer.notify(moveUpdateMessage);
+                    }
+                }
+            }
+        });
+
+        this.session.addMessageHandler(new MessageHandler.Whole<ByteBuffer>() {
+            @Override
+            public void onMessage(ByteBuffer message) {
+                ServerMessage serverMessage = BinaryCodec.decodeMessage(message);
+
+                switch (serverMessage.getServerMessageType()) {
+                    case LOAD_GAME -> observer.notify((LoadGameMessage) serverMessage);
+                    case ERROR -> observer.notify((ErrorMessage) serverMessage);
+                    case NOTIFICATION -> observer.notify((NotificationMessage) serverMessage);
+                    case MOVE_UPDATE -> observer.notify((MoveUpdateMessage) serverMessage);
                 }
             }
         });
     }
 
+    private void send(UserGameCommand command) throws IOException {
+        if (binary) {
+            this.session.getBasicRemote().sendBinary(BinaryCodec.encode(command));
+        } else {
+            this.session.getBasicRemote().sendText(GSON.toJson(command));
+        }
+    }
+
     public void leaveSession(int gameId, String authToken) {
         try {
             UserGameCommand command = new UserGameCommand(UserGameCommand.CommandType.LEAVE, authToken, gameId, null);
 
-            String message = new Gson().toJson(command);
-
-            this.session.getBasicRemote().sendText(message);
+            send(command);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -63,9 +119,7 @@ public class WebSocketFacade {
         try {
             UserGameCommand command = new UserGameCommand(UserGameCommand.CommandType.MAKE_MOVE, authToken, gameId, move);
 
-            String message = new Gson().toJson(command);
-
-            this.session.getBasicRemote().sendText(message);
+            send(command);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -75,9 +129,27 @@ public class WebSocketFacade {
         try {
             UserGameCommand command = new UserGameCommand(UserGameCommand.CommandType.CONNECT, authToken, gameId, null);
 
-            String message = new Gson().toJson(command);
+            send(command);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void hint(String authToken, int gameId) {
+        try {
+            UserGameCommand command = new UserGameCommand(UserGameCommand.CommandType.HINT, authToken, gameId, null);
+
+            send(command);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void resync(String authToken, int gameId) {
+        try {
+            UserGameCommand command = new UserGameCommand(UserGameCommand.CommandType.RESYNC, authToken, gameId, null);
 
-            this.session.getBasicRemote().sendText(message);
+            send(command);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -87,9 +159,7 @@ public class WebSocketFacade {
         try {
             UserGameCommand command = new UserGameCommand(UserGameCommand.CommandType.RESIGN, authToken, gameId, null);
 
-            String message = new Gson().toJson(command);
-
-            this.session.getBasicRemote().sendText(message);
+            send(command);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
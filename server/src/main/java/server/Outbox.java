@@ -0,0 +1,217 @@
+package server;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The frames waiting to go out to one websocket connection.
+ * <p>
+ * Sending only puts a frame in the queue, so a broadcast never waits on a slow client. Frames
+ * are written one at a time with Jetty's asynchronous sends, and each finished write starts the
+ * next. A new LOAD_GAME replaces any older one still waiting, since only the newest game matters.
+ * When the queue is full the overflow policy decides between dropping the oldest move update and
+ * disconnecting the client. A dropped move update shows up to the client as a gap in the
+ * sequence numbers when the next update arrives, and it asks for the whole game again, so an
+ * update is only dropped while a newer update or game is on its way behind it. Nothing else can
+ * be dropped without the client missing it, so otherwise the client is disconnected either way.
+ */
+final class Outbox implements WriteCallback {
+
+    /**
+     * What to do when a frame arrives and the queue is already full
+     */
+    enum OverflowPolicy {
+        DROP_OLDEST,
+        DISCONNECT
+    }
+
+    /**
+     * Counters shared by every outbox on a server
+     */
+    static final class Metrics {
+        private final LongAdder depth = new LongAdder();
+        private final LongAccumulator peakDepth = new LongAccumulator(Math::max, 0);
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder disconnects = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        Stats stats() {
+            return new Stats(depth.sum(), peakDepth.get(), sent.sum(), coalesced.sum(), dropped.sum(),
+                    disconnects.sum(), failures.sum());
+        }
+    }
+
+    /**
+     * @param depth       frames waiting across every connection right now
+     * @param peakDepth   the most frames one connection has had waiting
+     * @param sent        frames written
+     * @param coalesced   LOAD_GAME frames replaced by a newer one before they went out
+     * @param dropped     frames thrown away because a queue was full
+     * @param disconnects clients disconnected for falling behind
+     * @param failures    writes that failed, which also end the connection's sending
+     */
+    record Stats(long depth, long peakDepth, long sent, long coalesced, long dropped, long disconnects,
+                 long failures) {
+    }
+
+    // a text or binary frame, whether it holds a whole game that a newer one makes stale, and
+    // whether the client can recover from losing it
+    private record Frame(String text, ByteBuffer bytes, boolean game, boolean droppable) {
+    }
+
+    private final Session session;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final Metrics metrics;
+    // told once when the outbox gives up on its session, so the connection can be forgotten
+    private final Runnable onClosed;
+
+    private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+    // a write is in flight; the next one starts when it finishes
+    private boolean sending;
+    private boolean closed;
+
+    Outbox(Session session, int capacity, OverflowPolicy policy, Metrics metrics, Runnable onClosed) {
+        this.session = session;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.metrics = metrics;
+        this.onClosed = onClosed;
+    }
+
+    /**
+     * @param game      true for a LOAD_GAME, which replaces any older one still waiting
+     * @param droppable true for a MOVE_UPDATE, which DROP_OLDEST may throw away
+     */
+    void sendText(String text, boolean game, boolean droppable) {
+        enqueue(new Frame(text, null, game, droppable));
+    }
+
+    void sendBytes(ByteBuffer bytes, boolean game, boolean droppable) {
+        enqueue(new Frame(null, bytes, game, droppable));
+    }
+
+    private void enqueue(Frame frame) {
+        boolean disconnect = false;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (frame.game()) {
+                removeStaleGames();
+            }
+            if (queue.size() >= capacity && (policy == OverflowPolicy.DISCONNECT || !dropOldest(frame))) {
+                disconnect = true;
+                close();
+            }
+            if (!disconnect) {
+                queue.addLast(frame);
+                metrics.depth.increment();
+                metrics.peakDepth.accumulate(queue.size());
+                if (sending) {
+                    return;
+                }
+                sending = true;
+            }
+        }
+
+        if (disconnect) {
+            metrics.disconnects.increment();
+            session.close(StatusCode.POLICY_VIOLATION, "Too far behind");
+            onClosed.run();
+            return;
+        }
+        sendNext();
+    }
+
+    private void removeStaleGames() {
+        Iterator<Frame> frames = queue.iterator();
+        while (frames.hasNext()) {
+            if (frames.next().game()) {
+                frames.remove();
+                metrics.depth.decrement();
+                metrics.coalesced.increment();
+            }
+        }
+    }
+
+    /**
+     * @param incoming the frame that is about to be queued
+     * @return True if the oldest waiting move update had a newer update or game behind it to
+     * show the client the gap, and has been dropped
+     */
+    private boolean dropOldest(Frame incoming) {
+        Frame oldest = null;
+        boolean followed = incoming.droppable() || incoming.game();
+        for (Frame frame : queue) {
+            if (oldest == null) {
+                if (frame.droppable()) {
+                    oldest = frame;
+                }
+            } else if (frame.droppable() || frame.game()) {
+                followed = true;
+            }
+        }
+        if (oldest == null || !followed) {
+            return false;
+        }
+        Frame dropped = oldest;
+        queue.removeIf(frame -> frame == dropped);
+        metrics.depth.decrement();
+        metrics.dropped.increment();
+        return true;
+    }
+
+    /**
+     * Starts writing the next frame, or stops if there isn't one. A write that finishes right
+     * away calls back into this, so the stack can get as deep as the queue is long
+     */
+    private void sendNext() {
+        Frame frame;
+        synchronized (this) {
+            frame = closed ? null : queue.pollFirst();
+            if (frame == null) {
+                sending = false;
+                return;
+            }
+            metrics.depth.decrement();
+        }
+        if (frame.text() != null) {
+            session.getRemote().sendString(frame.text(), this);
+        } else {
+            session.getRemote().sendBytes(frame.bytes(), this);
+        }
+    }
+
+    @Override
+    public void writeSuccess() {
+        metrics.sent.increment();
+        sendNext();
+    }
+
+    @Override
+    public void writeFailed(Throwable x) {
+        metrics.failures.increment();
+        synchronized (this) {
+            close();
+            sending = false;
+        }
+        session.close(StatusCode.SERVER_ERROR, "Write failed");
+        onClosed.run();
+    }
+
+    private void close() {
+        closed = true;
+        metrics.depth.add(-queue.size());
+        queue.clear();
+    }
+}
@@ -1,5 +1,6 @@
 package server;
 
+import chess.PositionCache;
 import com.google.gson.Gson;
 import dataaccess.*;
 import io.javalin.Javalin;
@@ -12,6 +13,9 @@ import java.util.Map;
 
 public class Server {
 
+    /** Megabytes for the shared position cache when chess.cache.mb isn't set */
+    public static final int DEFAULT_CACHE_MB = 32;
+
     private final Javalin javalin;
     private final Gson gson = new Gson();
 
@@ -32,14 +36,31 @@ public class Server {
         try {DatabaseManager.createDatabase();}
         catch (DataAccessException ignored) {}
 
+        // games on the server tend to pass through the same positions, so share their move lists.
+        // chess.cache.mb sets the size, and 0 turns the cache off
+        PositionCache.configureShared(Integer.getInteger("chess.cache.mb", DEFAULT_CACHE_MB));
+
         javalin = Javalin.create(config -> config.staticFiles.add("web"));
         WebSocketHandler wsHandler = new WebSocketHandler();
         javalin.ws("/ws", ws -> {
             ws.onConnect(wsHandler::onConnect);
             ws.onMessage(wsHandler::onMessage);
+            ws.onBinaryMessage(wsHandler::onBinaryMessage);
+            ws.onClose(wsHandler::onClose);
             ws.onError(wsHandler::onError);
         });
 
+        // websocket queue depths, drops and disconnects, for signed-in users only
+        javalin.get("/ws/stats", ctx -> {
+            try {
+                if (!AuthDataDAO.containsToken(ctx.header("authorization"))) {
+                    throw new NotAuthorizedException("unauthorized");
+                }
+                sendJsonResponse(ctx, wsHandler.stats(), 200);
+            } catch (NotAuthorizedException e) {sendJsonResponse(ctx, new ErrorResponse(e.getMessage()), 401);}
+            catch (Exception e) {sendJsonResponse(ctx, new ErrorResponse(e.getMessage()), 500);}
+        });
+
         this.javalin.delete("/db", ctx -> {
             try {
                 Clear.clearApp();
@@ -1,101 +1,305 @@
 package server;
 
+import chess.ChessAdapters;
 import chess.ChessGame;
 import chess.ChessMove;
 import chess.InvalidMoveException;
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import dataaccess.AuthDataDAO;
 import dataaccess.BadRequestException;
 import dataaccess.GameDataDAO;
+import engine.OpeningBook;
+import io.javalin.websocket.WsBinaryMessageContext;
+import io.javalin.websocket.WsCloseContext;
 import io.javalin.websocket.WsConnectContext;
+import io.javalin.websocket.WsContext;
 import io.javalin.websocket.WsErrorContext;
 import io.javalin.websocket.WsMessageContext;
 import model.AuthData;
 import model.GameData;
 import org.eclipse.jetty.websocket.api.Session;
 import org.jetbrains.annotations.NotNull;
+import websocket.BinaryCodec;
 import websocket.commands.UserGameCommand;
 import websocket.messages.ErrorMessage;
 import websocket.messages.LoadGameMessage;
+import websocket.messages.MoveUpdateMessage;
 import websocket.messages.NotificationMessage;
 import websocket.messages.ServerMessage;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class WebSocketHandler {
+    // games go out as FEN strings rather than reflected boards, see ChessAdapters
+    private static final Gson GSON = ChessAdapters.register(new GsonBuilder()).create();
+
     private static class Connection {
         public String authToken;
         public Session session;
         int gameId;
-
-        public Connection(String authToken, Session session, int gameId) {
+        // connected with BinaryCodec.QUERY, so sent binary frames instead of JSON
+        boolean binary;
+        // connected with MoveUpdateMessage.QUERY, so sent just the move after each move
+        boolean moveUpdates;
+        final Outbox outbox;
+
+        public Connection(String authToken, Session session, int gameId, boolean binary, boolean moveUpdates,
+                          Outbox outbox) {
             this.authToken = authToken;
             this.session = session;
             this.gameId = gameId;
+            this.binary = binary;
+            this.moveUpdates = moveUpdates;
+            this.outbox = outbox;
+        }
+
+        /**
+         * Queues the message and returns without waiting for it to be written
+         */
+        public void send(Outgoing message) {
+            boolean game = message.message instanceof LoadGameMessage;
+            // a lost move update shows up as a sequence gap and the client resyncs
+            boolean droppable = message.message instanceof MoveUpdateMessage;
+            if (binary) {
+                outbox.sendBytes(message.binary(), game, droppable);
+            } else {
+                outbox.sendText(message.json(), game, droppable);
+            }
+        }
+    }
+
+    /**
+     * A message on its way to a room. Each encoding is made the first time a connection needs
+     * it and then shared by everyone else in the room
+     */
+    private static class Outgoing {
+        private final ServerMessage message;
+        private String json;
+        private ByteBuffer binary;
+
+        Outgoing(ServerMessage message) {
+            this.message = message;
+        }
+
+        String json() {
+            if (json == null) {
+                json = GSON.toJson(message);
+            }
+            return json;
         }
 
-        public void send(String message) throws IOException {
-            session.getRemote().sendString(message);
+        ByteBuffer binary() {
+            if (binary == null) {
+                binary = BinaryCodec.encode(message);
+            }
+            // every send reads the same bytes through its own position
+            return binary.duplicate();
         }
     }
 
     private static class ConnectionManager {
         public final ConcurrentHashMap<String, Connection> connections = new ConcurrentHashMap<>();
+        // the connections in each game, so a broadcast only looks at its own game
+        private final ConcurrentHashMap<Integer, Set<Connection>> rooms = new ConcurrentHashMap<>();
+        // so replies to a connected session wait their turn behind its queued broadcasts
+        private final ConcurrentHashMap<Session, Connection> sessions = new ConcurrentHashMap<>();
+        private final int queueCapacity;
+        private final Outbox.OverflowPolicy overflowPolicy;
+        private final Outbox.Metrics metrics = new Outbox.Metrics();
+
+        ConnectionManager(int queueCapacity, Outbox.OverflowPolicy overflowPolicy) {
+            this.queueCapacity = queueCapacity;
+            this.overflowPolicy = overflowPolicy;
+        }
 
-        public void addConnection(String authToken, Session session, int gameId) {
-            connections.put(authToken, new Connection(authToken, session, gameId));
+        public void addConnection(String authToken, Session session, int gameId, boolean binary, boolean moveUpdates) {
+            // a session that connects again keeps its queue, so nothing already waiting is reordered
+            Connection previous = sessions.get(session);
+            Outbox outbox = previous != null ? previous.outbox
+                    : new Outbox(session, queueCapacity, overflowPolicy, metrics, () -> removeSession(session));
+            Connection connection = new Connection(authToken, session, gameId, binary, moveUpdates, outbox);
+            // added inside compute so a room emptying out at the same time can't take it along
+            rooms.compute(gameId, (id, room) -> {
+                Set<Connection> members = room != null ? room : ConcurrentHashMap.<Connection>newKeySet();
+                members.add(connection);
+                return members;
+            });
+            sessions.put(session, connection);
+            Connection old = connections.put(authToken, connection);
+            if (old != null) {
+                leaveRoom(old);
+                if (old.session != session) {
+                    sessions.remove(old.session, old);
+                }
+            }
         }
 
         public void removeConnection(String authToken) {
-            connections.remove(authToken);
+            Connection old = connections.remove(authToken);
+            if (old != null) {
+                leaveRoom(old);
+                sessions.remove(old.session, old);
+            }
+        }
+
+        /**
+         * Forgets a session that has closed, taking its connection out of its game
+         */
+        public void removeSession(Session session) {
+            Connection old = sessions.remove(session);
+            if (old != null) {
+                leaveRoom(old);
+                connections.remove(old.authToken, old);
+            }
+        }
+
+        public Connection forSession(Session session) {
+            return sessions.get(session);
+        }
+
+        private void leaveRoom(Connection connection) {
+            rooms.computeIfPresent(connection.gameId, (id, room) -> {
+                room.remove(connection);
+                return room.isEmpty() ? null : room;
+            });
         }
 
-        public void sendToAllClients(String authToken, ServerMessage message, int gameId) throws IOException {
-            for (Connection connection : connections.values()) {
+        public void sendToAllClients(String authToken, ServerMessage message, int gameId) {
+            Set<Connection> room = rooms.get(gameId);
+            if (room == null) {
+                return;
+            }
+            Outgoing outgoing = new Outgoing(message);
+            for (Connection connection : room) {
                 if (connection.session.isOpen()) {
-                    if (connection.gameId == gameId) {
-                        if (connection.authToken!= null && !connection.authToken.equals(authToken)) {
-                            connection.send(new Gson().toJson(message));
-                        }
+                    if (connection.authToken!= null && !connection.authToken.equals(authToken)) {
+                        connection.send(outgoing);
                     }
                 }
             }
         }
+
+        /**
+         * Sends everyone in the game either the whole game or just the move, whichever they asked for
+         */
+        public void sendGameUpdate(LoadGameMessage game, MoveUpdateMessage update, int gameId) {
+            Set<Connection> room = rooms.get(gameId);
+            if (room == null) {
+                return;
+            }
+            Outgoing outgoingGame = new Outgoing(game);
+            Outgoing outgoingUpdate = new Outgoing(update);
+            for (Connection connection : room) {
+                if (connection.session.isOpen() && connection.authToken != null) {
+                    connection.send(connection.moveUpdates ? outgoingUpdate : outgoingGame);
+                }
+            }
+        }
     }
 
-    private final ConnectionManager connections = new ConnectionManager();
+    /** How many messages may wait for one client before the overflow policy kicks in */
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private final ConnectionManager connections;
+    private OpeningBook book;
+
+    /**
+     * Queue sizes and the overflow policy come from the chess.ws.queue and chess.ws.overflow
+     * system properties, defaulting to DEFAULT_QUEUE_CAPACITY and dropping the oldest move update
+     */
+    public WebSocketHandler() {
+        this(Integer.getInteger("chess.ws.queue", DEFAULT_QUEUE_CAPACITY),
+                Outbox.OverflowPolicy.valueOf(System.getProperty("chess.ws.overflow", "DROP_OLDEST")));
+    }
+
+    /**
+     * @param queueCapacity  how many messages may wait for one client
+     * @param overflowPolicy what to do with a client whose queue is full
+     */
+    WebSocketHandler(int queueCapacity, Outbox.OverflowPolicy overflowPolicy) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1, was " + queueCapacity);
+        }
+        connections = new ConnectionManager(queueCapacity, overflowPolicy);
+    }
+
+    /**
+     * @return queue depths, drops and disconnects across every connection, as served by GET /ws/stats
+     */
+    Outbox.Stats stats() {
+        return connections.metrics.stats();
+    }
 
     public void onConnect(WsConnectContext ctx) {
         ctx.enableAutomaticPings();
     }
 
+    public void onClose(WsCloseContext ctx) {
+        connections.removeSession(ctx.session);
+    }
+
     public void onError(WsErrorContext ctx) {
         System.out.println("Error: " + ctx.error());
+        connections.removeSession(ctx.session);
     }
 
     public void onMessage(WsMessageContext ctx) {
         try {
-            UserGameCommand message = new Gson().fromJson(ctx.message(), UserGameCommand.class);
-            AuthData auth = AuthDataDAO.getAuthData(message.getAuthToken());
-            if (auth == null) {
-                throw new BadRequestException("Error: unauthorized");
-            }
-            if (!AuthDataDAO.containsToken(auth.authToken())) {
-                throw new BadRequestException("Unauthorized");
-            }
-            switch (message.getCommandType()) {
-                case CONNECT -> connect(message.getGameID(), auth, ctx);
-                case LEAVE -> leave(message.getGameID(), auth);
-                case RESIGN -> resign(message.getGameID(), auth);
-                case MAKE_MOVE -> makeMove(message.getGameID(), message.getChessMove(), auth);
-            }
+            handle(GSON.fromJson(ctx.message(), UserGameCommand.class), ctx);
         } catch (Exception e) {
-            ctx.send(new Gson().toJson(new ErrorMessage(ServerMessage.ServerMessageType.ERROR, e.getMessage())));
+            reply(ctx, new ErrorMessage(ServerMessage.ServerMessageType.ERROR, e.getMessage()));
         }
     }
 
-    private void makeMove(int gameId, ChessMove move, AuthData authData) throws IOException {
+    public void onBinaryMessage(WsBinaryMessageContext ctx) {
+        try {
+            handle(BinaryCodec.decodeCommand(ByteBuffer.wrap(ctx.data(), ctx.offset(), ctx.length())), ctx);
+        } catch (Exception e) {
+            reply(ctx, new ErrorMessage(ServerMessage.ServerMessageType.ERROR, e.getMessage()));
+        }
+    }
+
+    /**
+     * @return True if the client connected asking for binary frames
+     */
+    private static boolean binary(WsContext ctx) {
+        return BinaryCodec.BINARY.equals(ctx.queryParam(BinaryCodec.QUERY_PARAM));
+    }
+
+    private void reply(WsContext ctx, ServerMessage message) {
+        Connection connection = connections.forSession(ctx.session);
+        if (connection != null) {
+            connection.send(new Outgoing(message));
+        } else if (binary(ctx)) {
+            ctx.send(BinaryCodec.encode(message));
+        } else {
+            ctx.send(GSON.toJson(message));
+        }
+    }
+
+    private void handle(UserGameCommand message, WsContext ctx) {
+        AuthData auth = AuthDataDAO.getAuthData(message.getAuthToken());
+        if (auth == null) {
+            throw new BadRequestException("Error: unauthorized");
+        }
+        if (!AuthDataDAO.containsToken(auth.authToken())) {
+            throw new BadRequestException("Unauthorized");
+        }
+        switch (message.getCommandType()) {
+            case CONNECT -> connect(message.getGameID(), auth, ctx);
+            case LEAVE -> leave(message.getGameID(), auth);
+            case RESIGN -> resign(message.getGameID(), auth);
+            case MAKE_MOVE -> makeMove(message.getGameID(), message.getChessMove(), auth);
+            case HINT -> hint(message.getGameID(), ctx);
+            case RESYNC -> resync(message.getGameID(), ctx);
+        }
+    }
+
+    private void makeMove(int gameId, ChessMove move, AuthData authData) {
         // game updates to represent new move
         GameData game = GameDataDAO.getGame(gameId);
 
@@ -132,29 +336,45 @@ public class WebSocketHandler {
         String updateOnGame = authData.username() + " made the move: " + move;
         boolean gameOver = false;
         boolean whiteWon = false;
-        if (game.game().isInCheckmate(ChessGame.TeamColor.WHITE)) {
-            updateOnGame += "\n" + authData.username() + " (White) is in checkmate";
-        } else if (game.game().isInCheckmate(ChessGame.TeamColor.BLACK)) {
-            updateOnGame += "\n" + authData.username() + " (Black) is in checkmate";
-        } else if (game.game().isInCheck(ChessGame.TeamColor.WHITE)) {
-            updateOnGame += "\n" + authData.username() + " (White) is in check";
-            gameOver = true;
-        } else if (game.game().isInCheck(ChessGame.TeamColor.BLACK)) {
-            updateOnGame += "\n" + authData.username() + " (Black) is in check";
-            gameOver = true;
-            whiteWon = true;
-        } else if (game.game().isInStalemate(ChessGame.TeamColor.WHITE) || game.game().isInStalemate(ChessGame.TeamColor.BLACK)) {
-            updateOnGame += "\nStalemate occurred. Game is a draw";
-            gameOver = true;
+
+        // only the team whose turn it now is can be in check, checkmate or stalemate
+        String opponent = white ? game.blackUsername() + " (Black)" : game.whiteUsername() + " (White)";
+        ChessGame.Status status = game.game().status();
+        switch (status) {
+            case CHECKMATE -> {
+                updateOnGame += "\n" + opponent + " is in checkmate";
+                gameOver = true;
+                whiteWon = white;
+            }
+            case CHECK -> updateOnGame += "\n" + opponent + " is in check";
+            case STALEMATE -> {
+                updateOnGame += "\nStalemate occurred. Game is a draw";
+                gameOver = true;
+            }
+            case DRAW_BY_REPETITION -> {
+                updateOnGame += "\nThe same position came up three times. Game is a draw";
+                gameOver = true;
+            }
+            case DRAW_BY_FIFTY_MOVES -> {
+                updateOnGame += "\nFifty moves without a capture or pawn move. Game is a draw";
+                gameOver = true;
+            }
+            case DRAW_BY_INSUFFICIENT_MATERIAL -> {
+                updateOnGame += "\nNeither side can checkmate. Game is a draw";
+                gameOver = true;
+            }
         }
 
         GameData updatedGameData = new GameData(gameId, game.whiteUsername(), game.blackUsername(), game.gameName(), game.game(), gameOver, whiteWon);
 
         GameDataDAO.updateGame(gameId, updatedGameData);
 
-        // server sends a load_game message to all clients in the game with an updated game
+        // server sends a load_game message to all clients in the game with an updated game,
+        // or just the move to clients that asked for move updates
         LoadGameMessage message = new LoadGameMessage(ServerMessage.ServerMessageType.LOAD_GAME, updatedGameData.game());
-        connections.sendToAllClients("", message, gameId);
+        MoveUpdateMessage update = new MoveUpdateMessage(ServerMessage.ServerMessageType.MOVE_UPDATE, move, status,
+                MoveUpdateMessage.sequence(updatedGameData.game()));
+        connections.sendGameUpdate(message, update, gameId);
 
         // server sends a notification message to all clients in the game informing them what move was made
         // if move results in check, checkmate, or stalemate. server notifies all clients
@@ -162,25 +382,60 @@ public class WebSocketHandler {
         connections.sendToAllClients(authData.authToken(), noti, gameId);
     }
 
-    private void connect(int gameId, AuthData auth, WsMessageContext ctx) {
+    private void connect(int gameId, AuthData auth, WsContext ctx) {
         GameData gameData = GameDataDAO.getGame(gameId);
 
         if (gameData == null || gameData.game() == null) {
-            ctx.send(new Gson().toJson(new ErrorMessage(ServerMessage.ServerMessageType.ERROR, "game does not exist")));
+            reply(ctx, new ErrorMessage(ServerMessage.ServerMessageType.ERROR, "game does not exist"));
             return;
         }
 
-        connections.addConnection(auth.authToken(), ctx.session, gameId);
+        connections.addConnection(auth.authToken(), ctx.session, gameId, binary(ctx),
+                MoveUpdateMessage.MOVES.equals(ctx.queryParam(MoveUpdateMessage.QUERY_PARAM)));
 
         LoadGameMessage message = new LoadGameMessage(ServerMessage.ServerMessageType.LOAD_GAME, gameData.game());
-        ctx.send(new Gson().toJson(message));
+        reply(ctx, message);
 
         NotificationMessage noti = getNotificationMessage(auth, gameData);
-        try {
-            connections.sendToAllClients(auth.authToken(), noti, gameId);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        connections.sendToAllClients(auth.authToken(), noti, gameId);
+    }
+
+    private void hint(int gameId, WsContext ctx) {
+        GameData gameData = GameDataDAO.getGame(gameId);
+
+        if (gameData == null || gameData.game() == null) {
+            throw new BadRequestException("Game Does Not Exist");
+        }
+
+        OpeningBook openingBook = openingBook();
+        String hint = openingBook == null ? "No opening book found"
+                : OpeningBook.describe(openingBook.lookup(gameData.game()));
+        reply(ctx, new NotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION, hint));
+    }
+
+    /**
+     * @return the book from OpeningBook.openDefault, opened the first time a hint is asked for,
+     * or null if the book named by chess.book can't be read
+     */
+    private synchronized OpeningBook openingBook() {
+        if (book == null) {
+            try {
+                book = OpeningBook.openDefault();
+            } catch (IOException e) {
+                System.out.println("Error: " + e.getMessage());
+            }
+        }
+        return book;
+    }
+
+    private void resync(int gameId, WsContext ctx) {
+        GameData gameData = GameDataDAO.getGame(gameId);
+
+        if (gameData == null || gameData.game() == null) {
+            throw new BadRequestException("Game Does Not Exist");
         }
+
+        reply(ctx, new LoadGameMessage(ServerMessage.ServerMessageType.LOAD_GAME, gameData.game()));
     }
 
     @NotNull
@@ -213,11 +468,7 @@ public class WebSocketHandler {
         // server sends  a notification message to all other clients that root left.
         String message = auth.username() + " has left the game";
         NotificationMessage noti = new NotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION, message);
-        try {
-            connections.sendToAllClients(auth.authToken(), noti, gameId);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        connections.sendToAllClients(auth.authToken(), noti, gameId);
 
         // take client out of connections
         connections.removeConnection(auth.authToken());
@@ -256,11 +507,7 @@ public class WebSocketHandler {
         // server sends a notification message to all clients in the game informing that root resigned
         String message = auth.username() + " has resigned" + won;
         NotificationMessage noti = new NotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION, message);
-        try {
-            connections.sendToAllClients("", noti, gameId);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        connections.sendToAllClients("", noti, gameId);
     }
 
 }
@@ -1,5 +1,6 @@
 package passoff.server;
 
+import chess.ChessAdapters;
 import com.google.gson.GsonBuilder;
 
 public class TestFactory {
@@ -34,6 +35,8 @@ public class TestFactory {
          */
         GsonBuilder builder = new GsonBuilder();
         // builder.registerTypeAdapter(ChessMove.class, /*type adapter or json serializer */);
+        // the server sends games as FEN strings
+        ChessAdapters.register(builder);
         return builder;
     }
 
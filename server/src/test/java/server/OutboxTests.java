@@ -0,0 +1,251 @@
+package server;
+
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class OutboxTests {
+
+    /**
+     * Stands in for a Jetty session. Writes wait until finishAll is called, unless immediate is
+     * set, in which case they complete inside the send like a fast socket would
+     */
+    private static class FakeSession {
+        final List<String> written = new ArrayList<>();
+        final List<WriteCallback> pending = new ArrayList<>();
+        boolean immediate;
+        int closeCode;
+        int removed;
+        final Session session;
+
+        FakeSession() {
+            RemoteEndpoint remote = (RemoteEndpoint) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{RemoteEndpoint.class}, (proxy, method, args) -> {
+                        if (args == null || args.length != 2 || !(args[1] instanceof WriteCallback callback)) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        if (args[0] instanceof ByteBuffer bytes) {
+                            written.add(StandardCharsets.UTF_8.decode(bytes).toString());
+                        } else {
+                            written.add((String) args[0]);
+                        }
+                        if (immediate) {
+                            callback.writeSuccess();
+                        } else {
+                            pending.add(callback);
+                        }
+                        return null;
+                    });
+            session = (Session) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{Session.class}, (proxy, method, args) -> switch (method.getName()) {
+                        case "getRemote" -> remote;
+                        case "isOpen" -> closeCode == 0;
+                        case "close" -> {
+                            closeCode = args != null && args.length == 2 ? (int) args[0] : StatusCode.NORMAL;
+                            yield null;
+                        }
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "equals" -> proxy == args[0];
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        Outbox outbox(int capacity, Outbox.OverflowPolicy policy, Outbox.Metrics metrics) {
+            return new Outbox(session, capacity, policy, metrics, () -> removed++);
+        }
+
+        void finishAll() {
+            while (!pending.isEmpty()) {
+                pending.remove(0).writeSuccess();
+            }
+        }
+    }
+
+    @Test
+    public void sendsInOrder() {
+        FakeSession fake = new FakeSession();
+        Outbox.Metrics metrics = new Outbox.Metrics();
+        Outbox outbox = fake.outbox(8, Outbox.OverflowPolicy.DROP_OLDEST, metrics);
+
+        outbox.sendText("a", false, false);
+        outbox.sendBytes(ByteBuffer.wrap("b".getBytes(StandardCharsets.UTF_8)), false, false);
+        outbox.sendText("c", false, true);
+        // only one write at a time
+        Assertions.assertEquals(List.of("a"), fake.written);
+        Assertions.assertEquals(2, metrics.stats().depth());
+
+        fake.finishAll();
+        Assertions.assertEquals(List.of("a", "b", "c"), fake.written);
+        Outbox.Stats stats = metrics.stats();
+        Assertions.assertEquals(0, stats.depth());
+        Assertions.assertEquals(3, stats.sent());
+        Assertions.assertEquals(2, stats.peakDepth());
+    }
+
+    @Test
+    public void immediateWritesDrainTheQueue() {
+        FakeSession fake = new FakeSession();
+        Outbox.Metrics metrics = new Outbox.Metrics();
+        Outbox outbox = fake.outbox(4, Outbox.OverflowPolicy.DROP_OLDEST, metrics);
+
+        // fill the queue behind a slow write, then let the rest complete as soon as they start
+        outbox.sendText("first", false, false);
+        outbox.sendText("1", false, true);
+        outbox.sendText("2", false, true);
+        outbox.sendText("3", false, true);
+        fake.immediate = true;
+        fake.finishAll();
+        Assertions.assertEquals(List.of("first", "1", "2", "3"), fake.written);
+
+        outbox.sendText("4", false, true);
+        Assertions.assertEquals("4", fake.written.get(4));
+        Assertions.assertEquals(0, metrics.stats().depth());
+        Assertions.assertEquals(5, metrics.stats().sent());
+    }
+
+    @Test
+    public void newGameReplacesStaleGames() {
+        FakeSession fake = new FakeSession();
+        Outbox.Metrics metrics = new Outbox.Metrics();
+        Outbox outbox = fake.outbox(8, Outbox.OverflowPolicy.DROP_OLDEST, metrics);
+
+        outbox.sendText("game 1", true, false);
+        outbox.sendText("game 2", true, false);
+        outbox.sendText("note", false, false);
+        outbox.sendText("game 3", true, false);
+        outbox.sendText("game 4", true, false);
+        Assertions.assertEquals(2, metrics.stats().depth());
+        Assertions.assertEquals(2, metrics.stats().coalesced());
+
+        fake.finishAll();
+        // game 1 was already being written
+        Assertions.assertEquals(List.of("game 1", "note", "game 4"), fake.written);
+        Assertions.assertEquals(0, metrics.stats().depth());
+    }
+
+    @Test
+    public void dropOldestDropsMoveUpdates() {
+        FakeSession fake = new FakeSession();
+        Outbox.Metrics metrics = new Outbox.Metrics();
+        Outbox outbox = fake.outbox(3, Outbox.OverflowPolicy.DROP_OLDEST, metrics);
+
+        outbox.sendText("in flight", false, false);
+        outbox.sendText("error", false, false);
+        outbox.sendText("move 1", false, true);
+        outbox.sendText("move 2", false, true);
+        outbox.sendText("note", false, false);
+        outbox.sendText("move 3", false, true);
+
+        Outbox.Stats stats = metrics.stats();
+        Assertions.assertEquals(2, stats.dropped());
+        Assertions.assertEquals(3, stats.depth());
+        Assertions.assertEquals(3, stats.peakDepth());
+
+        fake.finishAll();
+        Assertions.assertEquals(List.of("in flight", "error", "note", "move 3"), fake.written);
+        Assertions.assertEquals(0, metrics.stats().depth());
+    }
+
+    @Test
+    public void dropOldestDisconnectsWhenNothingCanGo() {
+        FakeSession fake = new FakeSession();
+        Outbox.Metrics metrics = new Outbox.Metrics();
+        Outbox outbox = fake.outbox(2, Outbox.OverflowPolicy.DROP_OLDEST, metrics);
+
+        outbox.sendText("in flight", false, false);
+        outbox.sendText("error", false, false);
+        outbox.sendText("note", false, false);
+        // nothing droppable is waiting, and dropping the new update would leave no gap to notice
+        outbox.sendText("move", false, true);
+        Assertions.assertEquals(StatusCode.POLICY_VIOLATION, fake.closeCode);
+        Assertions.assertEquals(1, fake.removed);
+        Outbox.Stats stats = metrics.stats();
+        Assertions.assertEquals(0, stats.dropped());
+        Assertions.assertEquals(1, stats.disconnects());
+        Assertions.assertEquals(0, stats.depth());
+    }
+
+    @Test
+    public void dropOldestKeepsTheLastUpdate() {
+        FakeSession fake = new FakeSession();
+        Outbox.Metrics metrics = new Outbox.Metrics();
+        Outbox outbox = fake.outbox(2, Outbox.OverflowPolicy.DROP_OLDEST, metrics);
+
+        outbox.sendText("in flight", false, false);
+        outbox.sendText("move", false, true);
+        outbox.sendText("error", false, false);
+        // no newer update or game would follow the waiting one, so it can't go
+        outbox.sendText("note", false, false);
+        Assertions.assertEquals(StatusCode.POLICY_VIOLATION, fake.closeCode);
+        Assertions.assertEquals(0, metrics.stats().dropped());
+        Assertions.assertEquals(1, metrics.stats().disconnects());
+    }
+
+    @Test
+    public void dropOldestDropsUpdatesAheadOfAGame() {
+        FakeSession fake = new FakeSession();
+        Outbox.Metrics metrics = new Outbox.Metrics();
+        Outbox outbox = fake.outbox(2, Outbox.OverflowPolicy.DROP_OLDEST, metrics);
+
+        outbox.sendText("in flight", false, false);
+        outbox.sendText("move", false, true);
+        outbox.sendText("error", false, false);
+        outbox.sendText("game", true, false);
+        Assertions.assertEquals(0, fake.closeCode);
+        Assertions.assertEquals(1, metrics.stats().dropped());
+
+        fake.finishAll();
+        Assertions.assertEquals(List.of("in flight", "error", "game"), fake.written);
+    }
+
+    @Test
+    public void disconnectPolicy() {
+        FakeSession fake = new FakeSession();
+        Outbox.Metrics metrics = new Outbox.Metrics();
+        Outbox outbox = fake.outbox(2, Outbox.OverflowPolicy.DISCONNECT, metrics);
+
+        outbox.sendText("in flight", false, false);
+        outbox.sendText("move 1", false, true);
+        outbox.sendText("move 2", false, true);
+        Assertions.assertEquals(0, fake.closeCode);
+
+        outbox.sendText("move 3", false, true);
+        Assertions.assertEquals(StatusCode.POLICY_VIOLATION, fake.closeCode);
+        Assertions.assertEquals(1, fake.removed);
+        Assertions.assertEquals(0, metrics.stats().depth());
+        Assertions.assertEquals(1, metrics.stats().disconnects());
+
+        // a closed outbox writes nothing more
+        fake.finishAll();
+        outbox.sendText("late", false, false);
+        Assertions.assertEquals(List.of("in flight"), fake.written);
+        Assertions.assertEquals(0, metrics.stats().depth());
+    }
+
+    @Test
+    public void failedWriteClosesTheOutbox() {
+        FakeSession fake = new FakeSession();
+        Outbox.Metrics metrics = new Outbox.Metrics();
+        Outbox outbox = fake.outbox(8, Outbox.OverflowPolicy.DROP_OLDEST, metrics);
+
+        outbox.sendText("a", false, false);
+        outbox.sendText("b", false, false);
+        fake.pending.remove(0).writeFailed(new RuntimeException("connection reset"));
+
+        Assertions.assertEquals(StatusCode.SERVER_ERROR, fake.closeCode);
+        Assertions.assertEquals(1, fake.removed);
+        Outbox.Stats stats = metrics.stats();
+        Assertions.assertEquals(1, stats.failures());
+        Assertions.assertEquals(0, stats.depth());
+        Assertions.assertEquals(List.of("a"), fake.written);
+    }
+}
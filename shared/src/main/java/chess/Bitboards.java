@@ -0,0 +1,132 @@
+package chess;
+
+/**
+ * Square indexing and precomputed attack masks shared by the bitboard move generator.
+ * <p>
+ * Squares are numbered 0-63 starting at row 1, column 1 (a1) and running across each row,
+ * so bit {@code (row - 1) * 8 + (col - 1)} of a bitboard stands for that square.
+ */
+final class Bitboards {
+
+    static final long[] KNIGHT_ATTACKS = new long[64];
+    static final long[] KING_ATTACKS = new long[64];
+    static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    // squares strictly between two squares on the same row, column or diagonal, otherwise empty
+    static final long[][] BETWEEN = new long[64][64];
+    // the whole row, column or diagonal through two squares, otherwise empty
+    static final long[][] LINE = new long[64][64];
+    // b1, d1, ..., a2, c2, ... (a1 is a dark square)
+    static final long LIGHT_SQUARES = 0x55AA55AA55AA55AAL;
+
+    private static final int[][] KNIGHT_STEPS = {{1,2},{1,-2},{-1,2},{-1,-2},{2,1},{2,-1},{-2,1},{-2,-1}};
+    private static final int[][] ROOK_STEPS = {{1,0},{0,-1},{-1,0},{0,1}};
+    private static final int[][] BISHOP_STEPS = {{1,1},{1,-1},{-1,1},{-1,-1}};
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            KNIGHT_ATTACKS[square] = stepAttacks(square, KNIGHT_STEPS);
+            KING_ATTACKS[square] = stepAttacks(square, ROOK_STEPS) | stepAttacks(square, BISHOP_STEPS);
+            PAWN_ATTACKS[ChessGame.TeamColor.WHITE.ordinal()][square] = stepAttacks(square, new int[][] {{1,1},{1,-1}});
+            PAWN_ATTACKS[ChessGame.TeamColor.BLACK.ordinal()][square] = stepAttacks(square, new int[][] {{-1,1},{-1,-1}});
+        }
+        for (int a = 0; a < 64; a++) {
+            for (int b = 0; b < 64; b++) {
+                long bits = (1L << a) | (1L << b);
+                if (a != b && (rookRays(a, 0L) & (1L << b)) != 0) {
+                    BETWEEN[a][b] = rookRays(a, 1L << b) & rookRays(b, 1L << a);
+                    LINE[a][b] = (rookRays(a, 0L) & rookRays(b, 0L)) | bits;
+                } else if (a != b && (bishopRays(a, 0L) & (1L << b)) != 0) {
+                    BETWEEN[a][b] = bishopRays(a, 1L << b) & bishopRays(b, 1L << a);
+                    LINE[a][b] = (bishopRays(a, 0L) & bishopRays(b, 0L)) | bits;
+                }
+            }
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    static int square(int row, int col) {
+        return (row - 1) * 8 + (col - 1);
+    }
+
+    static int square(ChessPosition position) {
+        return square(position.getRow(), position.getColumn());
+    }
+
+    static int row(int square) {
+        return (square >>> 3) + 1;
+    }
+
+    static int col(int square) {
+        return (square & 7) + 1;
+    }
+
+    static ChessPosition position(int square) {
+        return ChessPosition.of(square);
+    }
+
+    static boolean onBoard(int row, int col) {
+        return row > 0 && row < 9 && col > 0 && col < 9;
+    }
+
+    static long rookAttacks(int square, long occupied) {
+        return MagicAttacks.rookAttacks(square, occupied);
+    }
+
+    static long bishopAttacks(int square, long occupied) {
+        return MagicAttacks.bishopAttacks(square, occupied);
+    }
+
+    /**
+     * Slow reference version of rookAttacks, used to build the magic tables
+     */
+    static long rookRays(int square, long occupied) {
+        return slidingAttacks(square, occupied, ROOK_STEPS);
+    }
+
+    /**
+     * Slow reference version of bishopAttacks, used to build the magic tables
+     */
+    static long bishopRays(int square, long occupied) {
+        return slidingAttacks(square, occupied, BISHOP_STEPS);
+    }
+
+    static long queenAttacks(int square, long occupied) {
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+    /**
+     * Walks each ray out from the square, stopping at (and including) the first occupied square
+     */
+    private static long slidingAttacks(int square, long occupied, int[][] steps) {
+        long attacks = 0L;
+        for (int[] step : steps) {
+            int row = row(square) + step[0];
+            int col = col(square) + step[1];
+            while (onBoard(row, col)) {
+                long bit = 1L << square(row, col);
+                attacks |= bit;
+                if ((occupied & bit) != 0) {
+                    break;
+                }
+                row += step[0];
+                col += step[1];
+            }
+        }
+        return attacks;
+    }
+
+    private static long stepAttacks(int square, int[][] steps) {
+        long attacks = 0L;
+        for (int[] step : steps) {
+            int row = row(square) + step[0];
+            int col = col(square) + step[1];
+            if (onBoard(row, col)) {
+                attacks |= 1L << square(row, col);
+            }
+        }
+        return attacks;
+    }
+}
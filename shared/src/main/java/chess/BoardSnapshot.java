@@ -0,0 +1,194 @@
+package chess;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An immutable copy of a game's position: what is on each square, whose turn it is and the move
+ * counters.
+ * <p>
+ * A {@link ChessGame} publishes a new snapshot each time its position is changed through
+ * makeMove, setBoard or setTeamTurn, so any number of other threads can read a consistent
+ * position from {@link ChessGame#snapshot()} without locking while the game moves on. Each
+ * square is a single byte, so taking a snapshot is one 64-byte array. The position key is worked
+ * out from those bytes rather than asked of the game, so taking a snapshot only reads the board's
+ * squares and never touches its lazily built bitboards.
+ */
+public final class BoardSnapshot {
+
+    /** Bytes taken by writeTo: one per square, then the turn and the two move counters */
+    public static final int ENCODED_SIZE = 64 + 1 + 2 + 2;
+
+    private static final ChessGame.TeamColor[] COLORS = ChessGame.TeamColor.values();
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    // 0 for an empty square, otherwise color * 6 + type + 1, indexed like Bitboards squares
+    private final byte[] squares;
+    private final ChessGame.TeamColor turn;
+    private final long positionKey;
+    private final int halfmoveClock;
+    private final int fullmoveNumber;
+
+    BoardSnapshot(ChessGame game) {
+        ChessBoard board = game.getBoard();
+        squares = new byte[64];
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = board.pieceAt(square);
+            if (piece != null) {
+                squares[square] = (byte) (piece.getTeamColor().ordinal() * 6 + piece.getPieceType().ordinal() + 1);
+            }
+        }
+        turn = game.getTeamTurn();
+        positionKey = positionKey(squares, turn);
+        halfmoveClock = game.getHalfmoveClock();
+        fullmoveNumber = game.getFullmoveNumber();
+    }
+
+    private BoardSnapshot(byte[] squares, ChessGame.TeamColor turn, int halfmoveClock, int fullmoveNumber) {
+        this.squares = squares;
+        this.turn = turn;
+        this.halfmoveClock = halfmoveClock;
+        this.fullmoveNumber = fullmoveNumber;
+        this.positionKey = positionKey(squares, turn);
+    }
+
+    /**
+     * Writes the position in ENCODED_SIZE bytes: each square from a1 to h8 as 0 when empty or
+     * color * 6 + type + 1, then 0 or 1 for white or black to move, then the halfmove clock and
+     * the move number as unsigned 16-bit values. Counters too big for that are capped
+     *
+     * @param out where to write, advancing its position
+     */
+    public void writeTo(ByteBuffer out) {
+        out.put(squares);
+        out.put((byte) turn.ordinal());
+        out.putShort((short) Math.min(halfmoveClock, 0xFFFF));
+        out.putShort((short) Math.min(fullmoveNumber, 0xFFFF));
+    }
+
+    /**
+     * Reads a position written by writeTo
+     *
+     * @param in where to read from, advancing its position
+     * @return the position
+     * @throws IllegalArgumentException if the bytes aren't a position
+     */
+    public static BoardSnapshot readFrom(ByteBuffer in) {
+        if (in.remaining() < ENCODED_SIZE) {
+            throw new IllegalArgumentException("Expected " + ENCODED_SIZE + " bytes for a board, found " + in.remaining());
+        }
+        byte[] squares = new byte[64];
+        in.get(squares);
+        for (byte code : squares) {
+            if (code < 0 || code > 12) {
+                throw new IllegalArgumentException("Not a piece: " + code);
+            }
+        }
+        int turn = in.get();
+        if (turn != 0 && turn != 1) {
+            throw new IllegalArgumentException("Not a team: " + turn);
+        }
+        int halfmoveClock = in.getShort() & 0xFFFF;
+        int fullmoveNumber = in.getShort() & 0xFFFF;
+        return new BoardSnapshot(squares, COLORS[turn], halfmoveClock, fullmoveNumber);
+    }
+
+    /**
+     * @return the same key ChessGame.positionKey gives for these squares and turn
+     */
+    private static long positionKey(byte[] squares, ChessGame.TeamColor turn) {
+        long key = turn == ChessGame.TeamColor.BLACK ? Zobrist.BLACK_TO_MOVE : 0L;
+        for (int square = 0; square < 64; square++) {
+            if (squares[square] != 0) {
+                key ^= Zobrist.PIECE_KEYS[squares[square] - 1][square];
+            }
+        }
+        return key;
+    }
+
+    /**
+     * @param position the square to look at
+     * @return the piece on that square, or null if it is empty
+     */
+    public ChessPiece getPiece(ChessPosition position) {
+        return pieceAt(Bitboards.square(position));
+    }
+
+    ChessPiece pieceAt(int square) {
+        int code = squares[square];
+        if (code == 0) {
+            return null;
+        }
+        return ChessPiece.of(COLORS[(code - 1) / 6], TYPES[(code - 1) % 6]);
+    }
+
+    /**
+     * @return Which team's turn it was
+     */
+    public ChessGame.TeamColor getTeamTurn() {
+        return turn;
+    }
+
+    /**
+     * @return the game's position key at the time, see {@link ChessGame#positionKey()}
+     */
+    public long positionKey() {
+        return positionKey;
+    }
+
+    /**
+     * @return the number of moves since the last capture or pawn move
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * @return the move number, starting at 1 and going up after each of black's moves
+     */
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * @return a new board with the pieces from this snapshot, free to be changed
+     */
+    public ChessBoard toBoard() {
+        ChessBoard board = new ChessBoard();
+        for (int square = 0; square < 64; square++) {
+            if (squares[square] != 0) {
+                board.setPiece(square, pieceAt(square));
+            }
+        }
+        return board;
+    }
+
+    /**
+     * @return a new game at this position, with no moves to take back
+     */
+    public ChessGame toGame() {
+        return new ChessGame(toBoard(), turn, halfmoveClock, fullmoveNumber);
+    }
+
+    /**
+     * @return the position in Forsyth-Edwards Notation, see {@link ChessGame#toFen()}
+     */
+    public String toFen() {
+        return toGame().toFen();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof BoardSnapshot that)) {
+            return false;
+        }
+        return positionKey == that.positionKey && turn == that.turn
+                && halfmoveClock == that.halfmoveClock && fullmoveNumber == that.fullmoveNumber
+                && Arrays.equals(squares, that.squares);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(positionKey);
+    }
+}
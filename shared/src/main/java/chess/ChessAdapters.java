@@ -0,0 +1,86 @@
+package chess;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Compact Gson encodings for sending chess objects over the websocket: a game is its FEN
+ * string, a board is the FEN piece placement and a piece is its FEN letter. The start position
+ * goes out as about 60 bytes instead of the several kilobytes reflection produces by walking
+ * every square.
+ * <p>
+ * These are only for messages. Games saved to the database keep the reflective form, which
+ * includes the position history the draw rules need.
+ */
+public final class ChessAdapters {
+
+    private ChessAdapters() {
+    }
+
+    /**
+     * Registers the adapters for ChessGame, ChessBoard and ChessPiece
+     *
+     * @return the same builder
+     */
+    public static GsonBuilder register(GsonBuilder builder) {
+        return builder.registerTypeAdapter(ChessGame.class, new GameAdapter().nullSafe())
+                .registerTypeAdapter(ChessBoard.class, new BoardAdapter().nullSafe())
+                .registerTypeAdapter(ChessPiece.class, new PieceAdapter().nullSafe());
+    }
+
+    private static final class GameAdapter extends TypeAdapter<ChessGame> {
+        @Override
+        public void write(JsonWriter out, ChessGame game) throws IOException {
+            out.value(Fen.write(game));
+        }
+
+        @Override
+        public ChessGame read(JsonReader in) throws IOException {
+            try {
+                return Fen.parse(in.nextString());
+            } catch (IllegalArgumentException e) {
+                throw new JsonParseException(e.getMessage(), e);
+            }
+        }
+    }
+
+    private static final class BoardAdapter extends TypeAdapter<ChessBoard> {
+        @Override
+        public void write(JsonWriter out, ChessBoard board) throws IOException {
+            StringBuilder placement = new StringBuilder(72);
+            Fen.writePlacement(board, placement);
+            out.value(placement.toString());
+        }
+
+        @Override
+        public ChessBoard read(JsonReader in) throws IOException {
+            try {
+                return Fen.parsePlacement(in.nextString());
+            } catch (IllegalArgumentException e) {
+                throw new JsonParseException(e.getMessage(), e);
+            }
+        }
+    }
+
+    private static final class PieceAdapter extends TypeAdapter<ChessPiece> {
+        @Override
+        public void write(JsonWriter out, ChessPiece piece) throws IOException {
+            out.value(String.valueOf(Fen.charFor(piece)));
+        }
+
+        @Override
+        public ChessPiece read(JsonReader in) throws IOException {
+            String letter = in.nextString();
+            ChessPiece piece = letter.length() == 1 ? Fen.pieceFor(letter.charAt(0)) : null;
+            if (piece == null) {
+                throw new JsonParseException("Not a piece: " + letter);
+            }
+            return piece;
+        }
+    }
+}
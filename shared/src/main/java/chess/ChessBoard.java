@@ -11,10 +11,33 @@ import java.util.Arrays;
 public class ChessBoard {
 
     ChessPiece[][] squares = new ChessPiece[8][8];
+
+    // bitboard view of squares: one board per colored piece type plus an occupancy mask per color.
+    // these aren't serialized, so they are rebuilt from squares the first time they are needed
+    private transient long[] pieceBoards = new long[12];
+    private transient long[] colorBoards = new long[2];
+    private transient long zobristKey;
+    // tapered evaluation totals, see Evaluation
+    private transient int middlegameScore;
+    private transient int endgameScore;
+    private transient int phase;
+    private transient boolean bitboardsReady;
+
     public ChessBoard() {
         
     }
 
+    /**
+     * Creates an independent copy of another board. Pieces are immutable, so they are shared
+     *
+     * @param other the board to copy
+     */
+    public ChessBoard(ChessBoard other) {
+        for (int row = 0; row < 8; row++) {
+            squares[row] = other.squares[row].clone();
+        }
+    }
+
     /**
      * Adds a chess piece to the chessboard
      *
@@ -22,7 +45,33 @@ public class ChessBoard {
      * @param piece    the piece to add
      */
     public void addPiece(ChessPosition position, ChessPiece piece) {
-        squares[position.getRow()-1][position.getColumn()-1] = piece;
+        setPiece(Bitboards.square(position), piece);
+    }
+
+    void setPiece(int square, ChessPiece piece) {
+        ChessPiece old = squares[square >>> 3][square & 7];
+        squares[square >>> 3][square & 7] = piece;
+        if (bitboardsReady) {
+            long bit = 1L << square;
+            if (old != null) {
+                int index = pieceIndex(old);
+                pieceBoards[index] &= ~bit;
+                colorBoards[old.getTeamColor().ordinal()] &= ~bit;
+                zobristKey ^= Zobrist.PIECE_KEYS[index][square];
+                middlegameScore -= Evaluation.MG[index][square];
+                endgameScore -= Evaluation.EG[index][square];
+                phase -= Evaluation.PHASE[old.getPieceType().ordinal()];
+            }
+            if (piece != null) {
+                int index = pieceIndex(piece);
+                pieceBoards[index] |= bit;
+                colorBoards[piece.getTeamColor().ordinal()] |= bit;
+                zobristKey ^= Zobrist.PIECE_KEYS[index][square];
+                middlegameScore += Evaluation.MG[index][square];
+                endgameScore += Evaluation.EG[index][square];
+                phase += Evaluation.PHASE[piece.getPieceType().ordinal()];
+            }
+        }
     }
 
     /**
@@ -36,33 +85,194 @@ public class ChessBoard {
         return squares[position.getRow()-1][position.getColumn()-1];
     }
 
+    ChessPiece pieceAt(int square) {
+        return squares[square >>> 3][square & 7];
+    }
+
+    /**
+     * @return bitboard of every square holding a piece of the given color and type
+     */
+    long pieces(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        syncBitboards();
+        return pieceBoards[color.ordinal() * 6 + type.ordinal()];
+    }
+
+    /**
+     * @return how many pieces of the given color and type are on the board
+     */
+    public int pieceCount(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return Long.bitCount(pieces(color, type));
+    }
+
+    /**
+     * @return bitboard of every square holding a piece of the given color
+     */
+    long colorMask(ChessGame.TeamColor color) {
+        syncBitboards();
+        return colorBoards[color.ordinal()];
+    }
+
+    /**
+     * @return bitboard of every occupied square
+     */
+    long occupied() {
+        syncBitboards();
+        return colorBoards[0] | colorBoards[1];
+    }
+
+    /**
+     * @return the square index of the given team's king, or 64 if they have no king on the board.
+     * The king bitboard is kept up to date by addPiece, so this doesn't scan the board
+     */
+    int kingSquare(ChessGame.TeamColor color) {
+        return Long.numberOfTrailingZeros(pieces(color, ChessPiece.PieceType.KING));
+    }
+
+    /**
+     * Determines if any piece of the given team attacks a square, by casting each piece's attack
+     * pattern backwards out from the square and looking for a matching attacker
+     *
+     * @param square  the square to check
+     * @param byColor the team that may be attacking it
+     * @return True if a piece of byColor could capture on square
+     */
+    public boolean isSquareAttacked(ChessPosition square, ChessGame.TeamColor byColor) {
+        return isSquareAttacked(Bitboards.square(square), byColor);
+    }
+
+    boolean isSquareAttacked(int square, ChessGame.TeamColor byColor) {
+        // a pawn attacks this square exactly when an enemy pawn sitting here would attack it back
+        if ((Bitboards.PAWN_ATTACKS[byColor.opponent().ordinal()][square] & pieces(byColor, ChessPiece.PieceType.PAWN)) != 0) {
+            return true;
+        }
+        if ((Bitboards.KNIGHT_ATTACKS[square] & pieces(byColor, ChessPiece.PieceType.KNIGHT)) != 0) {
+            return true;
+        }
+        if ((Bitboards.KING_ATTACKS[square] & pieces(byColor, ChessPiece.PieceType.KING)) != 0) {
+            return true;
+        }
+
+        long occupied = occupied();
+        long queens = pieces(byColor, ChessPiece.PieceType.QUEEN);
+        if ((Bitboards.rookAttacks(square, occupied) & (pieces(byColor, ChessPiece.PieceType.ROOK) | queens)) != 0) {
+            return true;
+        }
+        return (Bitboards.bishopAttacks(square, occupied) & (pieces(byColor, ChessPiece.PieceType.BISHOP) | queens)) != 0;
+    }
+
+    /**
+     * @return bitboard of every piece of byColor attacking the square, treating only the squares
+     * in occupied as blocking sliding pieces
+     */
+    long attackers(int square, ChessGame.TeamColor byColor, long occupied) {
+        long queens = pieces(byColor, ChessPiece.PieceType.QUEEN);
+        return (Bitboards.PAWN_ATTACKS[byColor.opponent().ordinal()][square] & pieces(byColor, ChessPiece.PieceType.PAWN))
+                | (Bitboards.KNIGHT_ATTACKS[square] & pieces(byColor, ChessPiece.PieceType.KNIGHT))
+                | (Bitboards.KING_ATTACKS[square] & pieces(byColor, ChessPiece.PieceType.KING))
+                | (Bitboards.rookAttacks(square, occupied) & (pieces(byColor, ChessPiece.PieceType.ROOK) | queens))
+                | (Bitboards.bishopAttacks(square, occupied) & (pieces(byColor, ChessPiece.PieceType.BISHOP) | queens));
+    }
+
+    /**
+     * @return the Zobrist key of the pieces on the board, kept up to date by addPiece
+     */
+    long zobristKey() {
+        syncBitboards();
+        return zobristKey;
+    }
+
+    /**
+     * @return True if neither team has the pieces to checkmate: bare kings, a single bishop or
+     * knight, or only bishops that all stand on the same color of square
+     */
+    boolean insufficientMaterial() {
+        syncBitboards();
+        long heavy = 0L;
+        long knights = 0L;
+        long bishops = 0L;
+        for (int color = 0; color < 2; color++) {
+            int base = color * 6;
+            heavy |= pieceBoards[base + ChessPiece.PieceType.QUEEN.ordinal()]
+                    | pieceBoards[base + ChessPiece.PieceType.ROOK.ordinal()]
+                    | pieceBoards[base + ChessPiece.PieceType.PAWN.ordinal()];
+            knights |= pieceBoards[base + ChessPiece.PieceType.KNIGHT.ordinal()];
+            bishops |= pieceBoards[base + ChessPiece.PieceType.BISHOP.ordinal()];
+        }
+        if (heavy != 0) {
+            return false;
+        }
+        if (Long.bitCount(knights | bishops) <= 1) {
+            return true;
+        }
+        return knights == 0 && ((bishops & Bitboards.LIGHT_SQUARES) == 0 || (bishops & ~Bitboards.LIGHT_SQUARES) == 0);
+    }
+
+    /**
+     * @return the tapered material and piece-square score, positive when white is ahead. The
+     * totals are kept up to date by addPiece, so this doesn't scan the board
+     */
+    int evaluation() {
+        syncBitboards();
+        return Evaluation.taper(middlegameScore, endgameScore, phase);
+    }
+
+    private static int pieceIndex(ChessPiece piece) {
+        return piece.getTeamColor().ordinal() * 6 + piece.getPieceType().ordinal();
+    }
+
+    private void syncBitboards() {
+        if (bitboardsReady) {
+            return;
+        }
+        pieceBoards = new long[12];
+        colorBoards = new long[2];
+        zobristKey = 0L;
+        middlegameScore = 0;
+        endgameScore = 0;
+        phase = 0;
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = pieceAt(square);
+            if (piece != null) {
+                int index = pieceIndex(piece);
+                pieceBoards[index] |= 1L << square;
+                colorBoards[piece.getTeamColor().ordinal()] |= 1L << square;
+                zobristKey ^= Zobrist.PIECE_KEYS[index][square];
+                middlegameScore += Evaluation.MG[index][square];
+                endgameScore += Evaluation.EG[index][square];
+                phase += Evaluation.PHASE[piece.getPieceType().ordinal()];
+            }
+        }
+        bitboardsReady = true;
+    }
+
     /**
      * Sets the board to the default starting board
      * (How the game of chess normally starts)
      */
     public void resetBoard() {
         squares = new ChessPiece[8][8];
+        bitboardsReady = false;
 
         for (int i = 1; i < 9; i++) {
-            addPiece(new ChessPosition(2,i), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
-            addPiece(new ChessPosition(7,i), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
+            addPiece(ChessPosition.of(2, i), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+            addPiece(ChessPosition.of(7, i), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
         }
-        addPiece(new ChessPosition(1,1), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
-        addPiece(new ChessPosition(8,1), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
-        addPiece(new ChessPosition(1,2), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
-        addPiece(new ChessPosition(8,2), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
-        addPiece(new ChessPosition(1,3), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
-        addPiece(new ChessPosition(8,3), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
-        addPiece(new ChessPosition(1,4), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN));
-        addPiece(new ChessPosition(8,4), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN));
-        addPiece(new ChessPosition(1,5), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
-        addPiece(new ChessPosition(8,5), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
-        addPiece(new ChessPosition(1,8), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
-        addPiece(new ChessPosition(8,8), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
-        addPiece(new ChessPosition(1,7), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
-        addPiece(new ChessPosition(8,7), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
-        addPiece(new ChessPosition(1,6), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
-        addPiece(new ChessPosition(8,6), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
+        addPiece(ChessPosition.of(1, 1), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        addPiece(ChessPosition.of(8, 1), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
+        addPiece(ChessPosition.of(1, 2), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
+        addPiece(ChessPosition.of(8, 2), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
+        addPiece(ChessPosition.of(1, 3), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
+        addPiece(ChessPosition.of(8, 3), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
+        addPiece(ChessPosition.of(1, 4), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN));
+        addPiece(ChessPosition.of(8, 4), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN));
+        addPiece(ChessPosition.of(1, 5), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        addPiece(ChessPosition.of(8, 5), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+        addPiece(ChessPosition.of(1, 8), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        addPiece(ChessPosition.of(8, 8), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
+        addPiece(ChessPosition.of(1, 7), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
+        addPiece(ChessPosition.of(8, 7), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
+        addPiece(ChessPosition.of(1, 6), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
+        addPiece(ChessPosition.of(8, 6), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
     }
 
     @Override
@@ -73,11 +283,15 @@ public class ChessBoard {
         if (!(o instanceof ChessBoard that)) {
             return false;
         }
-        return Arrays.deepEquals(squares, that.squares);
+        // different keys always mean different boards, equal keys still need confirming
+        if (zobristKey() != that.zobristKey()) {
+            return false;
+        }
+        return Arrays.equals(pieceBoards, that.pieceBoards);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(squares);
+        return Long.hashCode(zobristKey());
     }
 }
@@ -14,11 +14,84 @@ public class ChessGame {
 
     private ChessBoard gameBoard;
     private TeamColor currentTurn = TeamColor.WHITE;
+    // moves since the last capture or pawn move, and the move number (starting at 1, going up after black moves)
+    private int halfmoveClock;
+    private int fullmoveNumber = 1;
+    // keys of the positions reached, for spotting repetitions. Only the ones that could still
+    // repeat are saved with the game, and the history is rebuilt from them when it is next needed
+    private long[] repetitionKeys;
+    private transient PositionHistory positions;
+    private transient UndoStack history = new UndoStack();
+    // status() result and the position key it was worked out for
+    private transient Status cachedStatus;
+    private transient long cachedStatusKey;
+    // the position as of the last makeMove, setBoard or setTeamTurn, for other threads to read
+    private transient volatile BoardSnapshot snapshot;
     public ChessGame() {
         this.gameBoard = new ChessBoard();
         this.gameBoard.resetBoard();
     }
 
+    /**
+     * Creates an independent copy of another game's position and turn, so it can be searched
+     * or played on separately. The copy starts with no moves to take back
+     *
+     * @param other the game to copy
+     */
+    public ChessGame(ChessGame other) {
+        this.gameBoard = new ChessBoard(other.gameBoard);
+        this.currentTurn = other.currentTurn;
+        this.halfmoveClock = other.halfmoveClock;
+        this.fullmoveNumber = other.fullmoveNumber;
+        this.repetitionKeys = other.repetitionKeys;
+        this.positions = new PositionHistory(other.positions());
+    }
+
+    ChessGame(ChessBoard board, TeamColor turn, int halfmoveClock, int fullmoveNumber) {
+        this.gameBoard = board;
+        this.currentTurn = turn;
+        this.halfmoveClock = halfmoveClock;
+        this.fullmoveNumber = fullmoveNumber;
+    }
+
+    /**
+     * Creates a game from a position in Forsyth-Edwards Notation, such as
+     * {@code rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b - - 0 1}. Castling and en passant
+     * aren't part of this game's rules, so those two fields are checked but otherwise ignored.
+     * The move counters may be left off, in which case they start at 0 and 1
+     *
+     * @param fen the position to load
+     * @return a new game at that position
+     * @throws IllegalArgumentException if fen isn't a valid FEN position
+     */
+    public static ChessGame fromFen(String fen) {
+        return Fen.parse(fen);
+    }
+
+    /**
+     * Writes the current position in Forsyth-Edwards Notation. The castling and en passant
+     * fields are always "-" since this game doesn't have those rules
+     *
+     * @return the position as a FEN string
+     */
+    public String toFen() {
+        return Fen.write(this);
+    }
+
+    /**
+     * @return the number of moves since the last capture or pawn move
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * @return the current move number, starting at 1 and going up after each of black's moves
+     */
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
     /**
      * @return Which team's turn it is
      */
@@ -33,6 +106,7 @@ public class ChessGame {
      */
     public void setTeamTurn(TeamColor team) {
         this.currentTurn = team;
+        publish();
     }
 
     /**
@@ -40,39 +114,43 @@ public class ChessGame {
      */
     public enum TeamColor {
         WHITE,
-        BLACK
-    }
-
-    private Collection<ChessPosition> kingCheck(ChessBoard gameBoard, ChessPosition kingPosition, TeamColor color) {
-        Collection<ChessPosition> enemyPos = new ArrayList<>();
-        for (int i = 0; i < 64; i++) {
-            int row = (i / 8) + 1;
-            int col = (i % 8) + 1;
-                ChessPiece currentPiece = gameBoard.getPiece(new ChessPosition(row, col));
-                if (currentPiece != null && currentPiece.getTeamColor() != color) {
-                    Collection<ChessMove> enemyMoves = currentPiece.pieceMoves(gameBoard, new ChessPosition(row, col));
-                    for (ChessMove enemyMove: enemyMoves) {
-                        if (enemyMove.getEndPosition().equals(kingPosition)) {
-                            enemyPos.add(enemyMove.getStartPosition());
-                        }
-                    }
-                }
+        BLACK;
 
+        /**
+         * @return the team playing against this one
+         */
+        public TeamColor opponent() {
+            return this == WHITE ? BLACK : WHITE;
         }
-        return enemyPos;
     }
 
-
-    private ChessPosition findKing(TeamColor teamColor) {
-        for (int row = 1; row <= 8; row++) {
-            for (int col = 1; col <= 8; col++) {
-                ChessPiece currentPiece = gameBoard.getPiece(new ChessPosition(row, col));
-                if (currentPiece != null && currentPiece.getTeamColor() == teamColor && currentPiece.getPieceType() == ChessPiece.PieceType.KING) {
-                    return new ChessPosition(row, col);
-                }
-            }
+    /**
+     * Enum identifying where the game stands for the team whose turn it is
+     */
+    public enum Status {
+        IN_PROGRESS,
+        CHECK,
+        CHECKMATE,
+        STALEMATE,
+        DRAW_BY_REPETITION,
+        DRAW_BY_FIFTY_MOVES,
+        DRAW_BY_INSUFFICIENT_MATERIAL;
+
+        /**
+         * @return True if the game can't go on
+         */
+        public boolean isGameOver() {
+            return this != IN_PROGRESS && this != CHECK;
         }
-        return new ChessPosition(-1,-1);
+    }
+
+    /**
+     * @return True if the given team's king is attacked on the given board. A team without a king
+     * on the board is never in check
+     */
+    private static boolean kingAttacked(ChessBoard board, TeamColor color) {
+        int king = board.kingSquare(color);
+        return king < 64 && board.isSquareAttacked(king, color.opponent());
     }
 
 
@@ -89,31 +167,130 @@ public class ChessGame {
             return null;
         }
 
-        Collection<ChessMove> legalMoves = new ArrayList<>();
+        IntMoveList moves = new IntMoveList();
+        validMoves(startPosition, moves);
 
-        Collection<ChessMove> potentialMoves = gamePiece.pieceMoves(gameBoard, startPosition);
-        TeamColor color = gamePiece.getTeamColor();
-        ChessPiece.PieceType pType = gamePiece.getPieceType();
+        Collection<ChessMove> legalMoves = new ArrayList<>(moves.size());
+        moves.addTo(legalMoves);
+        return legalMoves;
+    }
 
-        for (ChessMove move : potentialMoves) {
-            // simulate the move and make sure king doesn't end up in check
-            ChessPiece taken = gameBoard.getPiece(move.getEndPosition());
-            gameBoard.addPiece(startPosition, null);
-            gameBoard.addPiece(move.getEndPosition(), new ChessPiece(color, pType));
 
-            ChessPosition newKingPos = findKing(color);
+    /**
+     * Same as validMoves, but adds the moves to a reusable list of packed moves instead of
+     * building ChessMove objects. Nothing is added if there is no piece at startPosition
+     *
+     * @param startPosition the piece to get valid moves for
+     * @param moves         list the moves are added to
+     */
+    public void validMoves(ChessPosition startPosition, IntMoveList moves) {
+        validMoves(startPosition, (MoveSink) moves);
+    }
 
-            if (kingCheck(gameBoard, newKingPos, color).isEmpty()) {
-                legalMoves.add(move);
+    /**
+     * Same as validMoves, but hands each move to a sink as it is generated, stopping as soon as
+     * the sink asks to
+     *
+     * @param startPosition the piece to get valid moves for
+     * @param sink          receives the moves
+     * @return True if every move was generated, false if the sink stopped generation early
+     */
+    public boolean validMoves(ChessPosition startPosition, MoveSink sink) {
+        ChessPiece gamePiece = gameBoard.getPiece(startPosition);
+        if (gamePiece == null) {
+            return true;
+        }
+        int from = Bitboards.square(startPosition);
+        if (gamePiece.getTeamColor() == currentTurn && PositionCache.shared() != null) {
+            // pick this piece's moves out of the cached list for the whole position
+            IntMoveList all = new IntMoveList();
+            legalMoves(all);
+            for (int i = 0; i < all.size(); i++) {
+                if (PackedMove.from(all.get(i)) == from && !sink.accept(all.get(i))) {
+                    return false;
+                }
             }
+            return true;
+        }
+        MoveGenerator generator = new MoveGenerator(gameBoard, gamePiece.getTeamColor());
+        return gamePiece.addMoves(sink, gameBoard, from, generator.legalTargets(from));
+    }
 
-            gameBoard.addPiece(startPosition, new ChessPiece(color, pType));
-            gameBoard.addPiece(move.getEndPosition(), taken);
+    /**
+     * Gets every valid move for the team whose turn it is
+     *
+     * @return Set of valid moves, empty if the team has none
+     */
+    public Collection<ChessMove> legalMoves() {
+        IntMoveList moves = new IntMoveList();
+        legalMoves(moves);
 
-        }
+        Collection<ChessMove> legalMoves = new ArrayList<>(moves.size());
+        moves.addTo(legalMoves);
         return legalMoves;
     }
 
+    /**
+     * Same as legalMoves, but adds the moves to a reusable list of packed moves instead of
+     * building ChessMove objects
+     *
+     * @param moves list the moves are added to
+     */
+    public void legalMoves(IntMoveList moves) {
+        PositionCache cache = PositionCache.shared();
+        if (cache == null) {
+            generateLegalMoves(moves);
+            return;
+        }
+        long key = positionKey();
+        if (cache.get(key, moves) == null) {
+            int start = moves.size();
+            boolean inCheck = generateLegalMoves(moves);
+            cache.put(key, moves, start, statusFor(moves.size() > start, inCheck));
+        }
+    }
+
+    /**
+     * Same as legalMoves, but hands each move to a sink as it is generated, stopping as soon as
+     * the sink asks to. Moves always come fresh from the generator rather than the shared cache
+     *
+     * @param sink receives the moves
+     * @return True if every move was generated, false if the sink stopped generation early
+     */
+    public boolean legalMoves(MoveSink sink) {
+        return generateLegalMoves(new MoveGenerator(gameBoard, currentTurn), sink);
+    }
+
+    /**
+     * Counts the legal moves for the team whose turn it is, without generating them
+     *
+     * @return how many moves legalMoves would return
+     */
+    public int legalMoveCount() {
+        return new MoveGenerator(gameBoard, currentTurn).countLegalMoves();
+    }
+
+    /**
+     * @return True if the team to move is in check
+     */
+    private boolean generateLegalMoves(IntMoveList moves) {
+        MoveGenerator generator = new MoveGenerator(gameBoard, currentTurn);
+        generateLegalMoves(generator, moves);
+        return generator.inCheck();
+    }
+
+    private boolean generateLegalMoves(MoveGenerator generator, MoveSink sink) {
+        long pieces = gameBoard.colorMask(currentTurn);
+        while (pieces != 0) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            if (!gameBoard.pieceAt(from).addMoves(sink, gameBoard, from, generator.legalTargets(from))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
 
     /**
      * Makes a move in a chess game
@@ -140,23 +317,99 @@ public class ChessGame {
             throw new InvalidMoveException("Invalid move");
         }
 
+        playMove(move);
+        repetitionKeys = positions().recent(halfmoveClock);
+        publish();
+    }
+
+    /**
+     * Plays a move without checking that it is legal, recording what it changed so it can be
+     * taken back with unmakeMove. Meant for code that already knows the move is legal, such as
+     * filtering or searching moves that came from validMoves
+     *
+     * @param move chess move to perform
+     */
+    public void playMove(ChessMove move) {
+        play(Bitboards.square(move.getStartPosition()), Bitboards.square(move.getEndPosition()), move.getPromotionPiece());
+    }
+
+    /**
+     * Same as playMove, for a packed move
+     *
+     * @param move packed chess move to perform
+     */
+    public void playMove(int move) {
+        play(PackedMove.from(move), PackedMove.to(move), PackedMove.promotion(move));
+    }
+
+    private void play(int from, int to, ChessPiece.PieceType promotionPiece) {
+        ChessPiece piece = gameBoard.pieceAt(from);
+        ChessPiece placed = piece;
+
         // checking for pawn promotion
-        if (move.getPromotionPiece() != null) {
-            gameBoard.addPiece(move.getEndPosition(), new ChessPiece(piece.getTeamColor(), move.getPromotionPiece()));
-            gameBoard.addPiece(move.getStartPosition(), null);
+        if (promotionPiece != null) {
+            placed = ChessPiece.of(piece.getTeamColor(), promotionPiece);
+        }
+
+        ChessPiece captured = gameBoard.pieceAt(to);
+        positions().sync(positionKey());
+        history.push(from, to, piece, captured, currentTurn, halfmoveClock);
+        gameBoard.setPiece(from, null);
+        gameBoard.setPiece(to, placed);
+
+        if (captured != null || piece.getPieceType() == ChessPiece.PieceType.PAWN) {
+            halfmoveClock = 0;
         } else {
-            // putting the piece in the new spot and getting rid of it at old spot.
-            gameBoard.addPiece(move.getEndPosition(), piece);
-            gameBoard.addPiece(move.getStartPosition(), null);
+            halfmoveClock++;
+        }
+        if (piece.getTeamColor() == TeamColor.BLACK) {
+            fullmoveNumber++;
         }
 
         // making it so it is the other team's turn now
-        if (piece.getTeamColor() == TeamColor.WHITE) {
-            setTeamTurn(TeamColor.BLACK);
+        currentTurn = piece.getTeamColor().opponent();
+        positions().push(positionKey(), halfmoveClock);
+    }
+
+    /**
+     * Takes back the most recent move made with makeMove or playMove, restoring the moved piece,
+     * any captured piece, and whose turn it was
+     *
+     * @throws IllegalStateException if there is no move to take back
+     */
+    public void unmakeMove() {
+        if (history.isEmpty()) {
+            throw new IllegalStateException("No move to take back");
+        }
+        int entry = history.pop();
+        gameBoard.setPiece(history.to(entry), history.captured(entry));
+        gameBoard.setPiece(history.from(entry), history.moved(entry));
+        currentTurn = history.turn(entry);
+        halfmoveClock = history.halfmoveClock(entry);
+        if (history.moved(entry).getTeamColor() == TeamColor.BLACK) {
+            fullmoveNumber--;
+        }
+        positions().pop(halfmoveClock);
+    }
+
+    /**
+     * @return how many times the current position, with the same team to move, has come up
+     * since the last capture or pawn move, counting now
+     */
+    public int repetitionCount() {
+        long key = positionKey();
+        // a position that wasn't reached by a move, such as one set up directly, is new
+        if (!positions().isLatest(key)) {
+            return 1;
         }
-        else {
-            setTeamTurn(TeamColor.WHITE);
+        return positions().repetitions(key, halfmoveClock);
+    }
+
+    private PositionHistory positions() {
+        if (positions == null) {
+            positions = repetitionKeys == null ? new PositionHistory() : new PositionHistory(repetitionKeys);
         }
+        return positions;
     }
 
     /**
@@ -166,7 +419,7 @@ public class ChessGame {
      * @return True if the specified team is in check
      */
     public boolean isInCheck(TeamColor teamColor) {
-        return !kingCheck(gameBoard, findKing(teamColor), teamColor).isEmpty();
+        return kingAttacked(gameBoard, teamColor);
     }
 
     /**
@@ -181,17 +434,59 @@ public class ChessGame {
     }
 
     private boolean iterate(TeamColor teamColor) {
-        for (int row = 1; row <= 8; row++) {
-            for (int col = 1; col <= 8; col++) {
-                ChessPiece currentPiece = gameBoard.getPiece(new ChessPosition(row, col));
-                if (currentPiece != null && currentPiece.getTeamColor() == teamColor) {
-                    if (!validMoves(new ChessPosition(row, col)).isEmpty()) {
-                        return false;
-                    }
-                }
+        return !new MoveGenerator(gameBoard, teamColor).hasLegalMove();
+    }
+
+    /**
+     * Determines whether the team whose turn it is is in check, checkmate or stalemate, with a
+     * single pass over that team's moves. The answer is kept until the position changes, so
+     * asking again after the same move is free. Short of checkmate or stalemate, the game is also
+     * drawn once neither team has enough pieces left to mate, after fifty moves each without a
+     * capture or pawn move, or when the same position comes up a third time
+     *
+     * @return the status for the team whose turn it is
+     */
+    public Status status() {
+        long key = positionKey();
+        if (cachedStatus == null || cachedStatusKey != key) {
+            PositionCache cache = PositionCache.shared();
+            Status status = cache == null ? null : cache.status(key);
+            if (status == null && cache != null) {
+                // generate every move rather than stopping at the first so the entry is complete
+                IntMoveList moves = new IntMoveList();
+                boolean inCheck = generateLegalMoves(moves);
+                status = statusFor(!moves.isEmpty(), inCheck);
+                cache.put(key, moves, 0, status);
+            } else if (status == null) {
+                MoveGenerator generator = new MoveGenerator(gameBoard, currentTurn);
+                status = statusFor(generator.hasLegalMove(), generator.inCheck());
             }
+            cachedStatus = status;
+            cachedStatusKey = key;
         }
-        return true;
+        if (cachedStatus == Status.CHECKMATE || cachedStatus == Status.STALEMATE) {
+            return cachedStatus;
+        }
+
+        // the draw rules depend on how the game got here, not just the position, so they
+        // aren't cached
+        if (gameBoard.insufficientMaterial()) {
+            return Status.DRAW_BY_INSUFFICIENT_MATERIAL;
+        }
+        if (halfmoveClock >= 100) {
+            return Status.DRAW_BY_FIFTY_MOVES;
+        }
+        if (repetitionCount() >= 3) {
+            return Status.DRAW_BY_REPETITION;
+        }
+        return cachedStatus;
+    }
+
+    private static Status statusFor(boolean canMove, boolean inCheck) {
+        if (inCheck) {
+            return canMove ? Status.CHECK : Status.CHECKMATE;
+        }
+        return canMove ? Status.IN_PROGRESS : Status.STALEMATE;
     }
 
     /**
@@ -206,17 +501,69 @@ public class ChessGame {
             return false;
         }
 
-        // iterate through and if every piece of team color has no moves, checkmate is accomplished
+        // if every piece of team color has no moves, stalemate is accomplished
         return iterate(teamColor);
     }
 
     /**
-     * Sets this game's chessboard with a given board
+     * Sets this game's chessboard with a given board. The game starts over from it: the move
+     * counters go back to 0 and 1 and earlier positions no longer count as repetitions
      *
      * @param board the new board to use
      */
     public void setBoard(ChessBoard board) {
         gameBoard = board;
+        history.clear();
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        positions = new PositionHistory();
+        repetitionKeys = null;
+        publish();
+    }
+
+    /**
+     * Gets an immutable copy of the position as of the last makeMove, setBoard or setTeamTurn.
+     * Any thread can call this and read the result while the game goes on; the snapshot never
+     * changes. Moves made with playMove and taken back with unmakeMove, as a search does, aren't
+     * published. A game that hasn't published anything yet, such as one just read back from
+     * JSON, takes its first snapshot on this call, so that call belongs on the thread that owns
+     * the game
+     *
+     * @return the latest published position
+     */
+    public BoardSnapshot snapshot() {
+        BoardSnapshot current = snapshot;
+        return current != null ? current : publish();
+    }
+
+    private BoardSnapshot publish() {
+        BoardSnapshot current = new BoardSnapshot(this);
+        snapshot = current;
+        return current;
+    }
+
+    /**
+     * Gets a 64-bit Zobrist key for the current position, covering every piece on the board
+     * and whose turn it is. Equal positions always have equal keys; different positions
+     * almost never do
+     *
+     * @return the position key
+     */
+    public long positionKey() {
+        long key = gameBoard.zobristKey();
+        return currentTurn == TeamColor.BLACK ? key ^ Zobrist.BLACK_TO_MOVE : key;
+    }
+
+    /**
+     * Scores the position from material and where each piece stands, blending middlegame and
+     * endgame values by how much material is left. It is kept up to date as moves are made, so
+     * calling this after every move costs nothing. It doesn't look ahead, so it knows nothing
+     * of checks, hanging pieces or whose turn it is
+     *
+     * @return the score in centipawns, positive when white is ahead and negative when black is
+     */
+    public int evaluate() {
+        return gameBoard.evaluation();
     }
 
     /**
@@ -233,11 +580,14 @@ public class ChessGame {
         if (!(o instanceof ChessGame chessGame)) {
             return false;
         }
+        if (positionKey() != chessGame.positionKey()) {
+            return false;
+        }
         return Objects.equals(gameBoard, chessGame.gameBoard) && currentTurn == chessGame.currentTurn;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(gameBoard, currentTurn);
+        return Long.hashCode(positionKey());
     }
 }
@@ -14,6 +14,11 @@ public class ChessMove {
     private final ChessPosition endPosition;
     private final ChessPiece.PieceType promotionPiece;
 
+    // shared instances indexed by from square, to square, then promotion piece (0 for none).
+    // filled in the first time each move is asked for. moves are immutable, so threads racing
+    // to fill the same slot just store equal instances
+    private static final ChessMove[] MOVES = new ChessMove[64 * 64 * 7];
+
     public ChessMove(ChessPosition startPosition, ChessPosition endPosition,
                      ChessPiece.PieceType promotionPiece) {
         this.startPosition = startPosition;
@@ -21,6 +26,31 @@ public class ChessMove {
         this.promotionPiece = promotionPiece;
     }
 
+    /**
+     * Gets the shared instance for a move instead of allocating a new one. Moves to or from
+     * squares off the board still work, they just aren't shared
+     *
+     * @return a move equal to new ChessMove(startPosition, endPosition, promotionPiece)
+     */
+    public static ChessMove of(ChessPosition startPosition, ChessPosition endPosition,
+                               ChessPiece.PieceType promotionPiece) {
+        if (!Bitboards.onBoard(startPosition.getRow(), startPosition.getColumn())
+                || !Bitboards.onBoard(endPosition.getRow(), endPosition.getColumn())) {
+            return new ChessMove(startPosition, endPosition, promotionPiece);
+        }
+        return of(Bitboards.square(startPosition), Bitboards.square(endPosition), promotionPiece);
+    }
+
+    static ChessMove of(int from, int to, ChessPiece.PieceType promotionPiece) {
+        int index = (from * 64 + to) * 7 + (promotionPiece == null ? 0 : promotionPiece.ordinal() + 1);
+        ChessMove move = MOVES[index];
+        if (move == null) {
+            move = new ChessMove(ChessPosition.of(from), ChessPosition.of(to), promotionPiece);
+            MOVES[index] = move;
+        }
+        return move;
+    }
+
     /**
      * @return ChessPosition of starting location
      */
@@ -14,13 +14,33 @@ import java.util.Objects;
 public class ChessPiece {
     private final ChessGame.TeamColor pieceColor;
     private final PieceType type;
-    private final int[][] allDirect = new int[][] {{1,0},{0,-1},{-1,0},{0,1},{1,1},{1,-1},{-1,1},{-1,-1}};
+
+    // one shared instance per colored piece type, indexed by color then type
+    private static final ChessPiece[] PIECES = new ChessPiece[12];
+
+    static {
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            for (PieceType type : PieceType.values()) {
+                PIECES[color.ordinal() * 6 + type.ordinal()] = new ChessPiece(color, type);
+            }
+        }
+    }
 
     public ChessPiece(ChessGame.TeamColor pieceColor, PieceType type) {
         this.pieceColor = pieceColor;
         this.type = type;
     }
 
+    /**
+     * Gets the shared instance for a colored piece type instead of allocating a new piece.
+     * Pieces hold no position, so one instance can sit on any number of squares
+     *
+     * @return a piece equal to new ChessPiece(pieceColor, type)
+     */
+    public static ChessPiece of(ChessGame.TeamColor pieceColor, PieceType type) {
+        return PIECES[pieceColor.ordinal() * 6 + type.ordinal()];
+    }
+
     /**
      * The various different chess piece options
      */
@@ -47,153 +67,41 @@ public class ChessPiece {
         return type;
     }
 
-    private Collection<ChessMove> getMoves(ChessBoard board, ChessPosition myPosition, boolean diagonal, boolean vertical) {
-        List<ChessMove> potentialMoves = new ArrayList<>();
-        ChessPiece myPiece = board.getPiece(myPosition);
-
-        int[][] directions;
-        if (diagonal && !vertical) {
-            directions = new int[][] {{1,1},{1,-1},{-1,1},{-1,-1}};
-        } else if (!diagonal && vertical) {
-            directions = new int[][] {{1,0},{0,-1},{-1,0},{0,1}};
-        } else if (vertical) {
-            directions = allDirect;
-        } else {
-            return potentialMoves;
-        }
-
-        ChessPosition currentPosition;
-        ChessPiece currentPiece;
-        int currentRow;
-        int currentCol;
-
-        for (int[] direction:directions) {
-            currentRow = myPosition.getRow() + direction[0];
-            currentCol = myPosition.getColumn() + direction[1];
-
-            while (currentRow > 0 && currentRow < 9 && currentCol > 0 && currentCol < 9) {
-                currentPosition = new ChessPosition(currentRow, currentCol);
-                currentPiece = board.getPiece(currentPosition);
-
-                if (currentPiece == null) {
-                    potentialMoves.add(new ChessMove(myPosition, currentPosition, null));
-                } else {
-                    if (currentPiece.getTeamColor() != myPiece.getTeamColor()) {
-                        potentialMoves.add(new ChessMove(myPosition, currentPosition, null));
-                    }
-                    break;
-                }
+    private long pawnTargets(ChessBoard board, int from) {
+        boolean white = pieceColor == ChessGame.TeamColor.WHITE;
+        long occupied = board.occupied();
+        long enemies = board.colorMask(pieceColor.opponent());
+        long targets = Bitboards.PAWN_ATTACKS[pieceColor.ordinal()][from] & enemies;
 
-                currentRow += direction[0];
-                currentCol += direction[1];
-            }
-        }
-        return potentialMoves;
-    }
-
-    private Collection<ChessMove> getMovesKingKnight(ChessBoard board, ChessPosition myPosition, boolean king) {
-        List<ChessMove> potentialMoves = new ArrayList<>();
-        ChessPiece myPiece = board.getPiece(myPosition);
-
-        int[][] directions;
-        if (king) {
-            directions = allDirect;
-        } else {
-            directions = new int[][] {{1,2},{1,-2},{-1,2},{-1,-2},{2,1}, {2,-1},{-2,1},{-2,-1}};
+        int forward = white ? from + 8 : from - 8;
+        if (forward < 0 || forward > 63 || (occupied & (1L << forward)) != 0) {
+            return targets;
         }
+        targets |= 1L << forward;
 
-        ChessPosition currentPosition;
-        ChessPiece currentPiece;
-        int currentRow;
-        int currentCol;
-
-        for (int[] direction:directions) {
-            currentRow = myPosition.getRow() + direction[0];
-            currentCol = myPosition.getColumn() + direction[1];
-
-            if (currentRow > 0 && currentRow < 9 && currentCol > 0 && currentCol < 9) {
-                currentPosition = new ChessPosition(currentRow, currentCol);
-                currentPiece = board.getPiece(currentPosition);
-
-                if (currentPiece == null) {
-                    potentialMoves.add(new ChessMove(myPosition, currentPosition, null));
-                } else {
-                    if (currentPiece.getTeamColor() != myPiece.getTeamColor()) {
-                        potentialMoves.add(new ChessMove(myPosition, currentPosition, null));
-                    }
-                }
-            }
+        int startRow = white ? 2 : 7;
+        int twoForward = white ? from + 16 : from - 16;
+        if (Bitboards.row(from) == startRow && (occupied & (1L << twoForward)) == 0) {
+            targets |= 1L << twoForward;
         }
-        return potentialMoves;
+        return targets;
     }
 
-    private Collection<ChessMove> getMovesPawn(ChessBoard board, ChessPosition myPosition) {
-        List<ChessMove> potentialMoves = new ArrayList<>();
-        ChessPiece myPiece = board.getPiece(myPosition);
-
-        boolean white = myPiece.getTeamColor() == ChessGame.TeamColor.WHITE;
-
-        int upDown;
-        if (white) {
-            upDown = 1;
-        } else {
-            upDown = -1;
-        }
-
-        ChessPosition currentPosition;
-        ChessPiece currentPiece;
-        int currentRow;
-        int currentCol;
-
-        for (int i = -1; i <2; i += 2) {
-            currentRow = myPosition.getRow() + upDown;
-            currentCol = myPosition.getColumn() + i;
-
-            if (currentCol > 0 && currentCol < 9) {
-                currentPosition = new ChessPosition(currentRow, currentCol);
-                currentPiece = board.getPiece(currentPosition);
-
-                if (currentPiece != null) {
-                    if ((currentRow == 8 && white) || (currentRow == 1 && !white) && (currentPiece.getTeamColor() != myPiece.getTeamColor())) {
-                        potentialMoves.add(new ChessMove(myPosition, currentPosition, PieceType.QUEEN));
-                        potentialMoves.add(new ChessMove(myPosition, currentPosition, PieceType.ROOK));
-                        potentialMoves.add(new ChessMove(myPosition, currentPosition, PieceType.BISHOP));
-                        potentialMoves.add(new ChessMove(myPosition, currentPosition, PieceType.KNIGHT));
-
-                    } else if ((currentPiece.getTeamColor() != myPiece.getTeamColor())) {
-                        potentialMoves.add(new ChessMove(myPosition, currentPosition, null));
-                    }
-                }
-            }
-        }
-
-        int cap = 1;
-        if ((white && myPosition.getRow() == 2) || (!white && myPosition.getRow() == 7)) {
-            cap = 2;
-        }
-
-        for (int i = 1; i <= cap; i++) {
-            currentRow = myPosition.getRow() + upDown * i;
-            currentCol = myPosition.getColumn();
-
-            currentPosition = new ChessPosition(currentRow, currentCol);
-            currentPiece = board.getPiece(currentPosition);
-
-            if (currentPiece == null) {
-                if ((currentRow == 8 && white) || (currentRow == 1 && !white)) {
-                    potentialMoves.add(new ChessMove(myPosition, currentPosition, PieceType.QUEEN));
-                    potentialMoves.add(new ChessMove(myPosition, currentPosition, PieceType.ROOK));
-                    potentialMoves.add(new ChessMove(myPosition, currentPosition, PieceType.BISHOP));
-                    potentialMoves.add(new ChessMove(myPosition, currentPosition, PieceType.KNIGHT));
-                    return potentialMoves;
-                } else {
-                    potentialMoves.add(new ChessMove(myPosition, currentPosition, null));
-                }
-            } else {
-                return potentialMoves;
-            }
-        }
-        return potentialMoves;
+    /**
+     * @return bitboard of every square this piece could move to from the given square, ignoring
+     * whether the move leaves its king in danger
+     */
+    long targets(ChessBoard board, int from) {
+        long occupied = board.occupied();
+        long targets = switch (type) {
+            case KING -> Bitboards.KING_ATTACKS[from];
+            case QUEEN -> Bitboards.queenAttacks(from, occupied);
+            case BISHOP -> Bitboards.bishopAttacks(from, occupied);
+            case KNIGHT -> Bitboards.KNIGHT_ATTACKS[from];
+            case ROOK -> Bitboards.rookAttacks(from, occupied);
+            case PAWN -> pawnTargets(board, from);
+        };
+        return targets & ~board.colorMask(pieceColor);
     }
 
     /**
@@ -204,25 +112,66 @@ public class ChessPiece {
      * @return Collection of valid moves
      */
     public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
-        ChessPiece myPiece = board.getPiece(myPosition);
-        if (myPiece.getPieceType() == PieceType.QUEEN) {
-            return getMoves(board, myPosition, true, true);
-        } else if (myPiece.getPieceType() == PieceType.BISHOP) {
-            return getMoves(board, myPosition, true, false);
-        } else if (myPiece.getPieceType() == PieceType.ROOK) {
-            return getMoves(board, myPosition, false, true);
-        } else if (myPiece.getPieceType() == PieceType.KING) {
-            return getMovesKingKnight(board, myPosition, true);
-        } else if (myPiece.getPieceType() == PieceType.KNIGHT) {
-            return getMovesKingKnight(board, myPosition, false);
-        } else if (myPiece.getPieceType() == PieceType.PAWN) {
-            return getMovesPawn(board, myPosition);
+        List<ChessMove> potentialMoves = new ArrayList<>();
+        pieceMoves(board, myPosition, move -> potentialMoves.add(PackedMove.toChessMove(move)));
+        return potentialMoves;
+    }
+
+    /**
+     * Same as pieceMoves, but adds the moves to a reusable list of packed moves instead of
+     * building ChessMove objects
+     *
+     * @param moves list the moves are added to
+     */
+    public void pieceMoves(ChessBoard board, ChessPosition myPosition, IntMoveList moves) {
+        pieceMoves(board, myPosition, (MoveSink) moves);
+    }
+
+    /**
+     * Same as pieceMoves, but hands each move to a sink as it is generated, stopping as soon as
+     * the sink asks to
+     *
+     * @param sink receives the moves
+     * @return True if every move was generated, false if the sink stopped generation early
+     */
+    public boolean pieceMoves(ChessBoard board, ChessPosition myPosition, MoveSink sink) {
+        int from = Bitboards.square(myPosition);
+        return addMoves(sink, board, from, targets(board, from));
+    }
+
+    /**
+     * Hands a sink a packed move from the given square to each target square, flagging captures
+     * and expanding moves onto the last row into the four pawn promotions
+     *
+     * @return True if every move was handed over, false if the sink stopped early
+     */
+    boolean addMoves(MoveSink sink, ChessBoard board, int from, long targets) {
+        long enemies = board.colorMask(pieceColor.opponent());
+        int promotionRow = pieceColor == ChessGame.TeamColor.WHITE ? 8 : 1;
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+
+            int capture = (enemies & (1L << to)) != 0 ? PackedMove.CAPTURE : 0;
+            if (type == PieceType.PAWN && Bitboards.row(to) == promotionRow) {
+                if (!sink.accept(PackedMove.of(from, to, PieceType.QUEEN) | capture)
+                        || !sink.accept(PackedMove.of(from, to, PieceType.ROOK) | capture)
+                        || !sink.accept(PackedMove.of(from, to, PieceType.BISHOP) | capture)
+                        || !sink.accept(PackedMove.of(from, to, PieceType.KNIGHT) | capture)) {
+                    return false;
+                }
+            } else if (!sink.accept(PackedMove.of(from, to, null) | capture)) {
+                return false;
+            }
         }
-        return List.of();
+        return true;
     }
 
     @Override
     public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
         if (!(o instanceof ChessPiece that)) {
             return false;
         }
@@ -0,0 +1,249 @@
+package chess;
+
+/**
+ * Reads and writes positions in Forsyth-Edwards Notation.
+ * <p>
+ * Both directions work straight off the characters and the board's squares, so the only
+ * allocations are the new game when parsing and the string when writing. This game has no
+ * castling or en passant, so those fields are written as "-" and checked but otherwise ignored
+ * when read.
+ */
+final class Fen {
+
+    static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1";
+
+    private Fen() {
+    }
+
+    static ChessGame parse(String fen) {
+        if (fen == null) {
+            throw new IllegalArgumentException("FEN is null");
+        }
+        int length = fen.length();
+        ChessBoard board = new ChessBoard();
+        int i = readPlacement(fen, board);
+
+        // side to move
+        i = skipSpace(fen, i);
+        if (i >= length) {
+            throw invalid(fen, "missing side to move");
+        }
+        ChessGame.TeamColor turn = switch (fen.charAt(i)) {
+            case 'w' -> ChessGame.TeamColor.WHITE;
+            case 'b' -> ChessGame.TeamColor.BLACK;
+            default -> throw invalid(fen, "side to move must be w or b");
+        };
+        i++;
+        if (i < length && fen.charAt(i) != ' ') {
+            throw invalid(fen, "side to move must be w or b");
+        }
+
+        // castling and en passant, checked for shape and then ignored
+        i = skipSpace(fen, i);
+        while (i < length && fen.charAt(i) != ' ') {
+            if ("KQkq-".indexOf(fen.charAt(i)) < 0) {
+                throw invalid(fen, "bad castling field");
+            }
+            i++;
+        }
+        i = skipSpace(fen, i);
+        if (i < length) {
+            int end = fieldEnd(fen, i);
+            if (!enPassantField(fen, i, end, turn)) {
+                throw invalid(fen, "en passant field must be - or a square behind a pawn that just moved two");
+            }
+            i = end;
+        }
+
+        // move counters are optional
+        int halfmoveClock = 0;
+        int fullmoveNumber = 1;
+        i = skipSpace(fen, i);
+        if (i < length) {
+            int end = fieldEnd(fen, i);
+            halfmoveClock = parseCount(fen, i, end);
+            i = skipSpace(fen, end);
+            if (i < length) {
+                end = fieldEnd(fen, i);
+                fullmoveNumber = parseCount(fen, i, end);
+                if (fullmoveNumber == 0) {
+                    throw invalid(fen, "move number starts at 1");
+                }
+                if (skipSpace(fen, end) != length) {
+                    throw invalid(fen, "unexpected text after move number");
+                }
+            }
+        }
+
+        return new ChessGame(board, turn, halfmoveClock, fullmoveNumber);
+    }
+
+    /**
+     * Reads just the piece placement field, such as
+     * {@code rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR}
+     */
+    static ChessBoard parsePlacement(String placement) {
+        if (placement == null) {
+            throw new IllegalArgumentException("FEN is null");
+        }
+        ChessBoard board = new ChessBoard();
+        if (readPlacement(placement, board) != placement.length()) {
+            throw invalid(placement, "unexpected text after placement");
+        }
+        return board;
+    }
+
+    /**
+     * Puts the pieces from the placement field at the start of fen onto the board
+     *
+     * @return the index just past the placement field
+     */
+    private static int readPlacement(String fen, ChessBoard board) {
+        // from row 8 down to row 1
+        int length = fen.length();
+        int i = 0;
+        int row = 8;
+        int col = 1;
+        for (; i < length && fen.charAt(i) != ' '; i++) {
+            char c = fen.charAt(i);
+            if (c == '/') {
+                if (col != 9 || row == 1) {
+                    throw invalid(fen, "bad row " + row);
+                }
+                row--;
+                col = 1;
+            } else if (c >= '1' && c <= '8') {
+                col += c - '0';
+                if (col > 9) {
+                    throw invalid(fen, "row " + row + " is too long");
+                }
+            } else {
+                ChessPiece piece = pieceFor(c);
+                if (piece == null || col > 8) {
+                    throw invalid(fen, "unexpected '" + c + "'");
+                }
+                board.setPiece(Bitboards.square(row, col), piece);
+                col++;
+            }
+        }
+        if (row != 1 || col != 9) {
+            throw invalid(fen, "placement doesn't cover the board");
+        }
+        return i;
+    }
+
+    static String write(ChessGame game) {
+        StringBuilder fen = new StringBuilder(90);
+        writePlacement(game.getBoard(), fen);
+        fen.append(game.getTeamTurn() == ChessGame.TeamColor.WHITE ? " w - - " : " b - - ")
+                .append(game.getHalfmoveClock())
+                .append(' ')
+                .append(game.getFullmoveNumber());
+        return fen.toString();
+    }
+
+    /**
+     * Writes just the piece placement field
+     */
+    static void writePlacement(ChessBoard board, StringBuilder fen) {
+        for (int row = 8; row >= 1; row--) {
+            int empty = 0;
+            for (int col = 1; col <= 8; col++) {
+                ChessPiece piece = board.pieceAt(Bitboards.square(row, col));
+                if (piece == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty != 0) {
+                    fen.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                fen.append(charFor(piece));
+            }
+            if (empty != 0) {
+                fen.append((char) ('0' + empty));
+            }
+            if (row != 1) {
+                fen.append('/');
+            }
+        }
+    }
+
+    static char charFor(ChessPiece piece) {
+        char c = switch (piece.getPieceType()) {
+            case KING -> 'k';
+            case QUEEN -> 'q';
+            case BISHOP -> 'b';
+            case KNIGHT -> 'n';
+            case ROOK -> 'r';
+            case PAWN -> 'p';
+        };
+        return piece.getTeamColor() == ChessGame.TeamColor.WHITE ? Character.toUpperCase(c) : c;
+    }
+
+    /**
+     * @return the piece a FEN letter stands for, or null if it isn't one
+     */
+    static ChessPiece pieceFor(char c) {
+        ChessGame.TeamColor color = Character.isUpperCase(c) ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+        ChessPiece.PieceType type = switch (Character.toLowerCase(c)) {
+            case 'k' -> ChessPiece.PieceType.KING;
+            case 'q' -> ChessPiece.PieceType.QUEEN;
+            case 'b' -> ChessPiece.PieceType.BISHOP;
+            case 'n' -> ChessPiece.PieceType.KNIGHT;
+            case 'r' -> ChessPiece.PieceType.ROOK;
+            case 'p' -> ChessPiece.PieceType.PAWN;
+            default -> null;
+        };
+        return type == null ? null : ChessPiece.of(color, type);
+    }
+
+    /**
+     * @return True if the field from start to end is "-", or a square on the row a pawn of the
+     * team that just moved would have skipped: row 3 with black to move, row 6 with white to move
+     */
+    private static boolean enPassantField(String fen, int start, int end, ChessGame.TeamColor turn) {
+        if (end - start == 1) {
+            return fen.charAt(start) == '-';
+        }
+        if (end - start != 2) {
+            return false;
+        }
+        char col = fen.charAt(start);
+        char row = fen.charAt(start + 1);
+        return col >= 'a' && col <= 'h' && row == (turn == ChessGame.TeamColor.BLACK ? '3' : '6');
+    }
+
+    private static int skipSpace(String fen, int i) {
+        while (i < fen.length() && fen.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int fieldEnd(String fen, int i) {
+        while (i < fen.length() && fen.charAt(i) != ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int parseCount(String fen, int start, int end) {
+        if (end - start > 6) {
+            throw invalid(fen, "move counter is too large");
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = fen.charAt(i);
+            if (c < '0' || c > '9') {
+                throw invalid(fen, "move counters must be numbers");
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static IllegalArgumentException invalid(String fen, String reason) {
+        return new IllegalArgumentException("Invalid FEN (" + reason + "): " + fen);
+    }
+}
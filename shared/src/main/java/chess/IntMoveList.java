@@ -0,0 +1,74 @@
+package chess;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A reusable list of packed moves (see {@link PackedMove}). Clearing it keeps the backing
+ * array, so one list can be filled over and over without allocating. Moves are only turned into
+ * ChessMove objects when asked for.
+ */
+public final class IntMoveList implements MoveSink {
+
+    // no legal chess position has more than 218 moves
+    private int[] moves = new int[256];
+    private int size;
+
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, size * 2);
+        }
+        moves[size++] = move;
+    }
+
+    /**
+     * Adds the move, and never asks generation to stop
+     */
+    @Override
+    public boolean accept(int move) {
+        add(move);
+        return true;
+    }
+
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return moves[index];
+    }
+
+    /**
+     * @return the move at index as a ChessMove
+     */
+    public ChessMove getMove(int index) {
+        return PackedMove.toChessMove(get(index));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Drops every move after the first size moves
+     */
+    void truncate(int size) {
+        this.size = Math.min(this.size, size);
+    }
+
+    /**
+     * Adds every move in this list to a collection as ChessMoves
+     */
+    public void addTo(Collection<ChessMove> collection) {
+        for (int i = 0; i < size; i++) {
+            collection.add(PackedMove.toChessMove(moves[i]));
+        }
+    }
+}
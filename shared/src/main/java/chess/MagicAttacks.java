@@ -0,0 +1,139 @@
+package chess;
+
+/**
+ * Magic-bitboard attack tables for rooks and bishops.
+ * <p>
+ * For each square, the occupied squares along its rays are multiplied by a "magic" number so the
+ * relevant bits land in the top of the product, which then indexes a table of precomputed attack
+ * sets. The magics are searched for once when the class loads and the tables are shared by every
+ * board.
+ */
+final class MagicAttacks {
+
+    // starting seeds for the magic search on each row, picked so the search finishes quickly.
+    // the search is deterministic, so every JVM builds the same tables
+    private static final long[] ROW_SEEDS = {1611, 275, 2029, 1944, 1786, 442, 75, 2981};
+
+    private static final Table ROOK = new Table(true);
+    private static final Table BISHOP = new Table(false);
+
+    private MagicAttacks() {
+    }
+
+    static long rookAttacks(int square, long occupied) {
+        return ROOK.attacks(square, occupied);
+    }
+
+    static long bishopAttacks(int square, long occupied) {
+        return BISHOP.attacks(square, occupied);
+    }
+
+    private static final class Table {
+        private final long[] masks = new long[64];
+        private final long[] magics = new long[64];
+        private final int[] shifts = new int[64];
+        private final int[] offsets = new int[64];
+        private final long[] attacks;
+
+        // xorshift state for the magic search
+        private long seed;
+
+        Table(boolean rook) {
+            int size = 0;
+            for (int square = 0; square < 64; square++) {
+                masks[square] = relevantMask(square, rook);
+                shifts[square] = 64 - Long.bitCount(masks[square]);
+                offsets[square] = size;
+                size += 1 << Long.bitCount(masks[square]);
+            }
+            attacks = new long[size];
+
+            for (int square = 0; square < 64; square++) {
+                findMagic(square, rook);
+            }
+        }
+
+        long attacks(int square, long occupied) {
+            return attacks[offsets[square] + (int) (((occupied & masks[square]) * magics[square]) >>> shifts[square])];
+        }
+
+        private void findMagic(int square, boolean rook) {
+            long mask = masks[square];
+            int count = 1 << Long.bitCount(mask);
+            long[] occupancies = new long[count];
+            long[] reference = new long[count];
+
+            // enumerate every subset of the mask along with the attacks it produces
+            long subset = 0L;
+            for (int i = 0; i < count; i++) {
+                occupancies[i] = subset;
+                reference[i] = rook ? Bitboards.rookRays(square, subset) : Bitboards.bishopRays(square, subset);
+                subset = (subset - mask) & mask;
+            }
+
+            seed = ROW_SEEDS[square >>> 3] * 0x9E3779B97F4A7C15L;
+            int[] filledBy = new int[count];
+            int attempt = 0;
+            while (true) {
+                long magic = nextRandom() & nextRandom() & nextRandom();
+                if (Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6) {
+                    continue;
+                }
+                attempt++;
+                if (fits(square, magic, occupancies, reference, filledBy, attempt)) {
+                    magics[square] = magic;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Fills the square's slice of the table with the candidate magic, failing on the first
+         * index that two different attack sets would share. filledBy records which attempt last
+         * wrote each slot so the slice never has to be cleared between attempts.
+         */
+        private boolean fits(int square, long magic, long[] occupancies, long[] reference, int[] filledBy, int attempt) {
+            for (int i = 0; i < occupancies.length; i++) {
+                int index = (int) ((occupancies[i] * magic) >>> shifts[square]);
+                if (filledBy[index] != attempt) {
+                    filledBy[index] = attempt;
+                    attacks[offsets[square] + index] = reference[i];
+                } else if (attacks[offsets[square] + index] != reference[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private long nextRandom() {
+            seed ^= seed >>> 12;
+            seed ^= seed << 25;
+            seed ^= seed >>> 27;
+            return seed * 0x2545F4914F6CDD1DL;
+        }
+
+        /**
+         * The squares whose occupancy can change the attack set: every square along the rays
+         * except the last one before the edge, which is attacked whether it holds a piece or not
+         */
+        private static long relevantMask(int square, boolean rook) {
+            long rays = rook ? Bitboards.rookRays(square, 0L) : Bitboards.bishopRays(square, 0L);
+            long edges = 0L;
+            int row = Bitboards.row(square);
+            int col = Bitboards.col(square);
+            if (row != 1) {
+                edges |= 0x00000000000000FFL;
+            }
+            if (row != 8) {
+                edges |= 0xFF00000000000000L;
+            }
+            if (col != 1) {
+                edges |= 0x0101010101010101L;
+            }
+            if (col != 8) {
+                edges |= 0x8080808080808080L;
+            }
+            return rays & ~edges;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package chess;
+
+/**
+ * Generates only legal moves for one team on a board, without playing any of them.
+ * <p>
+ * The pieces checking the king and the pieces pinned to it are worked out once when the
+ * generator is created. After that each piece's moves are just its normal targets narrowed down:
+ * in check, other pieces may only capture the checker or block it; a pinned piece may only move
+ * along its pin; and the king may only step to squares the other team doesn't attack.
+ * A team with no king on the board is never in check.
+ */
+final class MoveGenerator {
+
+    private final ChessBoard board;
+    private final ChessGame.TeamColor color;
+    private final int king;
+    private final long checkers;
+    private final long checkMask;
+    private final long pinned;
+
+    MoveGenerator(ChessBoard board, ChessGame.TeamColor color) {
+        this.board = board;
+        this.color = color;
+        this.king = board.kingSquare(color);
+
+        if (king == 64) {
+            checkers = 0L;
+            checkMask = -1L;
+            pinned = 0L;
+            return;
+        }
+
+        ChessGame.TeamColor enemy = color.opponent();
+        checkers = board.attackers(king, enemy, board.occupied());
+        if (checkers == 0) {
+            checkMask = -1L;
+        } else if (Long.bitCount(checkers) == 1) {
+            checkMask = checkers | Bitboards.BETWEEN[king][Long.numberOfTrailingZeros(checkers)];
+        } else {
+            // double check, only the king can move
+            checkMask = 0L;
+        }
+        pinned = findPinned(enemy);
+    }
+
+    /**
+     * @return True if the team's king is attacked
+     */
+    boolean inCheck() {
+        return checkers != 0;
+    }
+
+    /**
+     * @return bitboard of every square the team's piece on the given square can legally move to
+     */
+    long legalTargets(int from) {
+        long targets = board.pieceAt(from).targets(board, from);
+        if (from == king) {
+            return safeKingTargets(targets);
+        }
+
+        targets &= checkMask;
+        if ((pinned & (1L << from)) != 0) {
+            targets &= Bitboards.LINE[king][from];
+        }
+        return targets;
+    }
+
+    /**
+     * @return True if any of the team's pieces has a legal move
+     */
+    boolean hasLegalMove() {
+        long pieces = board.colorMask(color);
+        while (pieces != 0) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            if (legalTargets(from) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return how many legal moves the team has, counting each pawn promotion four times, worked
+     * out from the target squares without generating any moves
+     */
+    int countLegalMoves() {
+        long pieces = board.colorMask(color);
+        long pawns = board.pieces(color, ChessPiece.PieceType.PAWN);
+        long lastRow = color == ChessGame.TeamColor.WHITE ? 0xFF00000000000000L : 0xFFL;
+        int count = 0;
+        while (pieces != 0) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            long targets = legalTargets(from);
+            count += Long.bitCount(targets);
+            if ((pawns & (1L << from)) != 0) {
+                // the other three promotions
+                count += 3 * Long.bitCount(targets & lastRow);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * A piece is pinned when it is the only piece between its king and an enemy slider that
+     * would otherwise attack the king
+     */
+    private long findPinned(ChessGame.TeamColor enemy) {
+        long queens = board.pieces(enemy, ChessPiece.PieceType.QUEEN);
+        long snipers = (Bitboards.rookAttacks(king, 0L) & (board.pieces(enemy, ChessPiece.PieceType.ROOK) | queens))
+                | (Bitboards.bishopAttacks(king, 0L) & (board.pieces(enemy, ChessPiece.PieceType.BISHOP) | queens));
+
+        long occupied = board.occupied();
+        long own = board.colorMask(color);
+        long result = 0L;
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+
+            long blockers = Bitboards.BETWEEN[king][sniper] & occupied;
+            if (Long.bitCount(blockers) == 1 && (blockers & own) != 0) {
+                result |= blockers;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Keeps the king's targets that no enemy piece attacks. The king is taken off the board
+     * first so it can't hide from a slider by stepping back along the slider's own line
+     */
+    private long safeKingTargets(long targets) {
+        ChessGame.TeamColor enemy = color.opponent();
+        long occupied = board.occupied() & ~(1L << king);
+        long safe = 0L;
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            if (board.attackers(to, enemy, occupied) == 0) {
+                safe |= 1L << to;
+            }
+        }
+        return safe;
+    }
+}
@@ -0,0 +1,16 @@
+package chess;
+
+/**
+ * Receives moves one at a time as they are generated, as packed moves (see {@link PackedMove}).
+ * Returning false stops generation, so a caller that only wants to know whether some move
+ * exists, or find the first one that matches, doesn't have to build a list of all of them.
+ */
+@FunctionalInterface
+public interface MoveSink {
+
+    /**
+     * @param move the next generated move
+     * @return True to keep generating, false to stop
+     */
+    boolean accept(int move);
+}
@@ -0,0 +1,84 @@
+package chess;
+
+/**
+ * Helpers for moves packed into the low 16 bits of an int, so move lists can be plain int
+ * arrays instead of ChessMove objects:
+ * <pre>
+ * bits 0-5   end square
+ * bits 6-11  start square
+ * bits 12-14 promotion piece: 0 none, 1 knight, 2 bishop, 3 rook, 4 queen
+ * bit  15    set if the move captures a piece
+ * </pre>
+ * Squares are numbered 0-63 as {@code (row - 1) * 8 + (column - 1)}. Without the capture flag
+ * this is the same layout Polyglot opening books use for their moves.
+ */
+public final class PackedMove {
+
+    public static final int CAPTURE = 1 << 15;
+
+    private static final ChessPiece.PieceType[] PROMOTIONS = {null, ChessPiece.PieceType.KNIGHT,
+            ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.ROOK, ChessPiece.PieceType.QUEEN};
+
+    private PackedMove() {
+    }
+
+    /**
+     * @param promotion the piece a pawn promotes to, or null if no promotion
+     * @return the packed move, without the capture flag
+     */
+    public static int of(int from, int to, ChessPiece.PieceType promotion) {
+        return to | from << 6 | promotionCode(promotion) << 12;
+    }
+
+    /**
+     * @return the packed form of a move, without the capture flag
+     * @throws IllegalArgumentException if the move leaves the board or promotes to a king or pawn
+     */
+    public static int of(ChessMove move) {
+        ChessPosition start = move.getStartPosition();
+        ChessPosition end = move.getEndPosition();
+        if (!Bitboards.onBoard(start.getRow(), start.getColumn()) || !Bitboards.onBoard(end.getRow(), end.getColumn())) {
+            throw new IllegalArgumentException("Move is off the board: " + move);
+        }
+        return of(Bitboards.square(start), Bitboards.square(end), move.getPromotionPiece());
+    }
+
+    public static int from(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static int to(int move) {
+        return move & 63;
+    }
+
+    /**
+     * @return the piece a pawn promotes to, or null if no promotion
+     */
+    public static ChessPiece.PieceType promotion(int move) {
+        return PROMOTIONS[(move >>> 12) & 7];
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & CAPTURE) != 0;
+    }
+
+    /**
+     * @return the shared ChessMove instance for a packed move
+     */
+    public static ChessMove toChessMove(int move) {
+        return ChessMove.of(from(move), to(move), promotion(move));
+    }
+
+    private static int promotionCode(ChessPiece.PieceType promotion) {
+        if (promotion == null) {
+            return 0;
+        }
+        return switch (promotion) {
+            case KNIGHT -> 1;
+            case BISHOP -> 2;
+            case ROOK -> 3;
+            case QUEEN -> 4;
+            default -> throw new IllegalArgumentException("Pawns can't promote to " + promotion);
+        };
+    }
+}
@@ -0,0 +1,140 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the positions reachable from a game in an exact number of moves ("perft"), to check
+ * the move generator against known node counts and to measure how fast it runs.
+ * <p>
+ * Run from the command line with {@code java chess.Perft <depth> [parallel]} to count from the
+ * starting position.
+ */
+public final class Perft {
+
+    /**
+     * @param depth how many moves deep the count went
+     * @param nodes how many positions were reached at that depth
+     * @param nanos how long the count took
+     */
+    public record Result(int depth, long nodes, long nanos) {
+        public long nodesPerSecond() {
+            return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("depth %d: %d nodes in %.3f s (%d nodes/s)", depth, nodes, nanos / 1e9, nodesPerSecond());
+        }
+    }
+
+    private Perft() {
+    }
+
+    /**
+     * Counts positions on the calling thread. The game is played forward and taken back as it
+     * is searched, so it is back where it started once this returns
+     *
+     * @param game  the position to count from
+     * @param depth how many moves deep to count
+     * @return the node count and how long it took
+     */
+    public static Result run(ChessGame game, int depth) {
+        long start = System.nanoTime();
+        long nodes = count(game, depth);
+        return new Result(depth, nodes, System.nanoTime() - start);
+    }
+
+    /**
+     * Counts positions with the moves from the starting position split across the pool, each
+     * searched on its own copy of the game. The given game is not changed
+     *
+     * @param game  the position to count from
+     * @param depth how many moves deep to count
+     * @param pool  the pool to run the count on
+     * @return the node count and how long it took
+     */
+    public static Result runParallel(ChessGame game, int depth, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        long nodes = pool.invoke(new CountTask(new ChessGame(game), depth, true));
+        return new Result(depth, nodes, System.nanoTime() - start);
+    }
+
+    static long count(ChessGame game, int depth) {
+        IntMoveList[] lists = new IntMoveList[Math.max(depth, 1)];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = new IntMoveList();
+        }
+        return count(game, depth, lists);
+    }
+
+    /**
+     * @param lists one reusable move list per remaining depth, so counting allocates nothing
+     */
+    private static long count(ChessGame game, int depth, IntMoveList[] lists) {
+        if (depth == 0) {
+            return 1;
+        }
+        if (depth == 1) {
+            return game.legalMoveCount();
+        }
+        IntMoveList moves = lists[depth - 1];
+        moves.clear();
+        game.legalMoves(moves);
+
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            game.playMove(moves.get(i));
+            nodes += count(game, depth - 1, lists);
+            game.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Counts one subtree. The task for the starting position forks a task per move instead
+     */
+    private static class CountTask extends RecursiveTask<Long> {
+        private final ChessGame game;
+        private final int depth;
+        private final boolean split;
+
+        CountTask(ChessGame game, int depth, boolean split) {
+            this.game = game;
+            this.depth = depth;
+            this.split = split;
+        }
+
+        @Override
+        protected Long compute() {
+            if (!split || depth <= 1) {
+                return count(game, depth);
+            }
+
+            List<CountTask> tasks = new ArrayList<>();
+            for (ChessMove move : game.legalMoves()) {
+                ChessGame child = new ChessGame(game);
+                child.playMove(move);
+                tasks.add(new CountTask(child, depth - 1, false));
+            }
+            invokeAll(tasks);
+
+            long nodes = 0;
+            for (CountTask task : tasks) {
+                nodes += task.join();
+            }
+            return nodes;
+        }
+    }
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        boolean parallel = args.length > 1 && args[1].equals("parallel");
+
+        ChessGame game = new ChessGame();
+        Result result = parallel ? runParallel(game, depth, ForkJoinPool.commonPool()) : run(game, depth);
+        System.out.println(result);
+    }
+}
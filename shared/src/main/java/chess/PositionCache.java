@@ -0,0 +1,198 @@
+package chess;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size cache of each position's legal moves and status, keyed by
+ * {@link ChessGame#positionKey()}, so games that reach the same position don't generate its
+ * moves again.
+ * <p>
+ * Entries live in one long[] with no locks. Each slot holds a check word, a header with the status
+ * and move count, and up to 64 packed moves four to a long. The check word is the key XORed with
+ * every other word in the slot, so a reader that races a writer and sees half of each entry gets a
+ * check that doesn't match and treats it as a miss. Positions with more than 64 legal moves are
+ * rare and are simply not cached. A newer entry always replaces an older one in its slot.
+ * <p>
+ * One cache can be shared by every game in the JVM with {@link #enableShared(int)}. It is off by
+ * default so searches and tests that don't ask for it never pay for it.
+ */
+public final class PositionCache {
+
+    /**
+     * @param hits       lookups that found their position
+     * @param misses     lookups that didn't, including collisions
+     * @param collisions lookups whose slot held a different position
+     * @param stores     entries written
+     */
+    public record Stats(long hits, long misses, long collisions, long stores) {
+        public double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+
+    static final int MAX_MOVES = 64;
+    private static final int MOVE_WORDS = MAX_MOVES / 4;
+    private static final int SLOT = 2 + MOVE_WORDS;
+
+    private static final ChessGame.Status[] STATUSES = ChessGame.Status.values();
+
+    private static volatile PositionCache shared;
+
+    private final long[] table;
+    private final int mask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+
+    /**
+     * @param megabytes roughly how much memory the cache may use, rounded down to a power of two
+     *                  number of slots
+     */
+    public PositionCache(int megabytes) {
+        long slots = Math.max(1L, (long) megabytes * 1024 * 1024 / (SLOT * 8));
+        int size = Integer.highestOneBit((int) Math.min(slots, Integer.MAX_VALUE / SLOT));
+        table = new long[size * SLOT];
+        mask = size - 1;
+    }
+
+    /**
+     * Turns on the cache shared by every game in the JVM, replacing any earlier one
+     *
+     * @param megabytes how much memory the cache may use
+     */
+    public static void enableShared(int megabytes) {
+        shared = new PositionCache(megabytes);
+    }
+
+    public static void disableShared() {
+        shared = null;
+    }
+
+    /**
+     * Turns the shared cache on with the given size, or off when the size is 0, as set from a
+     * property such as the server's chess.cache.mb
+     *
+     * @param megabytes how much memory the cache may use, or 0 for no cache
+     * @throws IllegalArgumentException if megabytes is negative
+     */
+    public static void configureShared(int megabytes) {
+        if (megabytes < 0) {
+            throw new IllegalArgumentException("Cache size can't be negative, was " + megabytes);
+        }
+        if (megabytes == 0) {
+            disableShared();
+        } else {
+            enableShared(megabytes);
+        }
+    }
+
+    /**
+     * @return the cache shared by every game, or null if it isn't turned on
+     */
+    public static PositionCache shared() {
+        return shared;
+    }
+
+    /**
+     * Adds a position's cached legal moves to the list
+     *
+     * @return the position's status, or null if it isn't cached, in which case nothing is added
+     */
+    ChessGame.Status get(long key, IntMoveList moves) {
+        int base = slot(key);
+        long check = table[base];
+        long header = table[base + 1];
+        int count = (int) (header >>> 3);
+        if (header == 0 || count > MAX_MOVES) {
+            misses.increment();
+            return null;
+        }
+
+        // copy the moves out first and only keep them once the check word proves they belong
+        // together, since another thread could be rewriting the slot underneath us
+        int start = moves.size();
+        long sum = key ^ header;
+        for (int word = 0; word < MOVE_WORDS; word++) {
+            long packed = table[base + 2 + word];
+            sum ^= packed;
+            for (int i = word * 4; i < Math.min(count, word * 4 + 4); i++) {
+                moves.add((int) (packed >>> (16 * (i & 3))) & 0xFFFF);
+            }
+        }
+        if (sum != check) {
+            moves.truncate(start);
+            misses.increment();
+            collisions.increment();
+            return null;
+        }
+        hits.increment();
+        return STATUSES[(int) (header & 7)];
+    }
+
+    /**
+     * @return the status of a cached position, or null if it isn't cached
+     */
+    ChessGame.Status status(long key) {
+        int base = slot(key);
+        long check = table[base];
+        long header = table[base + 1];
+        if (header == 0) {
+            misses.increment();
+            return null;
+        }
+        long sum = key ^ header;
+        for (int word = 0; word < MOVE_WORDS; word++) {
+            sum ^= table[base + 2 + word];
+        }
+        if (sum != check) {
+            misses.increment();
+            collisions.increment();
+            return null;
+        }
+        hits.increment();
+        return STATUSES[(int) (header & 7)];
+    }
+
+    /**
+     * Stores a position's legal moves, which are the list's entries from start onwards
+     */
+    void put(long key, IntMoveList moves, int start, ChessGame.Status status) {
+        int count = moves.size() - start;
+        if (count > MAX_MOVES) {
+            return;
+        }
+
+        int base = slot(key);
+        long header = (long) count << 3 | status.ordinal();
+        long sum = key ^ header;
+        for (int word = 0; word < MOVE_WORDS; word++) {
+            long packed = 0L;
+            for (int i = word * 4; i < Math.min(count, word * 4 + 4); i++) {
+                packed |= (long) moves.get(start + i) << (16 * (i & 3));
+            }
+            table[base + 2 + word] = packed;
+            sum ^= packed;
+        }
+        table[base + 1] = header;
+        table[base] = sum;
+        stores.increment();
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), collisions.sum(), stores.sum());
+    }
+
+    /**
+     * @return how many positions the cache can hold
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    private int slot(long key) {
+        return ((int) key & mask) * SLOT;
+    }
+}
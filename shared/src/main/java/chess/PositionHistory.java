@@ -0,0 +1,161 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * The keys of the positions a game has passed through, for spotting repeated positions.
+ * <p>
+ * Keys go onto a stack as moves are played and come back off as they are taken back. Only
+ * positions since the last capture or pawn move can come up again, and the fifty-move rule ends
+ * the game before there are more than 100 of those, so only the last 100 are looked at. The
+ * stack grows as needed rather than wrapping around, so a search can play any number of moves
+ * on top of a game and take them back without losing the positions it returns to.
+ * <p>
+ * To answer "how often has this position come up" without scanning, a small table counts the
+ * keys in that window by their low bits. A key whose count is 0 or 1 can't have repeated; only
+ * when two keys share a count does the window get scanned to tell a real repetition from two
+ * keys that happen to share bits. Keeping the counts costs one increment per move, plus one
+ * decrement for each position that drops out of the window, so it is constant time on average.
+ */
+final class PositionHistory {
+
+    // the fifty-move rule, in moves by either side
+    private static final int WINDOW = 100;
+    private static final int BUCKETS = 1024;
+
+    // the latest position's key is at count - 1
+    private long[] keys = new long[16];
+    private int count;
+
+    // counts of the keys from filterFrom up to filterTo, by their low bits, built the first time
+    // it is needed
+    private byte[] filter;
+    private int filterFrom;
+    private int filterTo;
+
+    PositionHistory() {
+    }
+
+    PositionHistory(PositionHistory other) {
+        keys = Arrays.copyOf(other.keys, Math.max(16, other.count));
+        count = other.count;
+    }
+
+    /**
+     * Starts from keys saved by recent, oldest first
+     */
+    PositionHistory(long[] recent) {
+        keys = Arrays.copyOf(recent, Math.max(16, recent.length * 2));
+        count = recent.length;
+    }
+
+    /**
+     * Starts over from the given position if it isn't the latest one recorded, which happens
+     * when a board is loaded or edited directly instead of being moved on
+     */
+    void sync(long key) {
+        if (!isLatest(key)) {
+            count = 0;
+            filter = null;
+            push(key, 0);
+        }
+    }
+
+    /**
+     * Records the position a move has just reached
+     *
+     * @param halfmoveClock the moves since the last capture or pawn move, which bounds how far
+     *                      back the position could have come up before
+     */
+    void push(long key, int halfmoveClock) {
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, count * 2);
+        }
+        keys[count++] = key;
+        window(halfmoveClock);
+    }
+
+    /**
+     * Forgets the latest position, after its move is taken back
+     *
+     * @param halfmoveClock the clock of the position that is now the latest
+     */
+    void pop(int halfmoveClock) {
+        if (count > 0) {
+            count--;
+            window(halfmoveClock);
+        }
+    }
+
+    /**
+     * @return True if the key is the latest position recorded
+     */
+    boolean isLatest(long key) {
+        return count > 0 && keys[count - 1] == key;
+    }
+
+    /**
+     * @return the keys of the positions that could still repeat, oldest first and ending with
+     * the latest, which is all a saved game needs to carry on counting repetitions
+     */
+    long[] recent(int halfmoveClock) {
+        int from = Math.max(0, count - 1 - Math.min(halfmoveClock, WINDOW));
+        return Arrays.copyOfRange(keys, from, count);
+    }
+
+    /**
+     * @return how many times the latest position has come up, counting this time
+     */
+    int repetitions(long key, int halfmoveClock) {
+        window(halfmoveClock);
+        int bucket = filter[bucket(key)] & 0xFF;
+        if (bucket < 2) {
+            return bucket;
+        }
+        int found = 0;
+        for (int i = filterFrom; i < filterTo; i++) {
+            if (keys[i] == key) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Moves the counted window to the positions that could still repeat, which is every
+     * position back to the last capture or pawn move, up to the fifty-move limit
+     */
+    private void window(int halfmoveClock) {
+        int to = count;
+        int from = Math.max(0, count - 1 - Math.min(halfmoveClock, WINDOW));
+        if (filter == null) {
+            filter = new byte[BUCKETS];
+            filterFrom = from;
+            filterTo = from;
+        }
+        while (filterTo < to) {
+            add(filterTo++);
+        }
+        while (filterTo > to) {
+            remove(--filterTo);
+        }
+        while (filterFrom < from) {
+            remove(filterFrom++);
+        }
+        while (filterFrom > from) {
+            add(--filterFrom);
+        }
+    }
+
+    private void add(int index) {
+        filter[bucket(keys[index])]++;
+    }
+
+    private void remove(int index) {
+        filter[bucket(keys[index])]--;
+    }
+
+    private static int bucket(long key) {
+        return (int) key & (BUCKETS - 1);
+    }
+}
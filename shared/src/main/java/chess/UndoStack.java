@@ -0,0 +1,78 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * Records what each played move changed so ChessGame can take it back without allocating.
+ * <p>
+ * Entries are stored in parallel arrays that grow as needed and are reused once popped.
+ */
+final class UndoStack {
+
+    // from | to << 6 | turn before the move << 12
+    private int[] squares = new int[16];
+    private ChessPiece[] movedPieces = new ChessPiece[16];
+    private ChessPiece[] capturedPieces = new ChessPiece[16];
+    private int[] halfmoveClocks = new int[16];
+    private int size;
+
+    void push(int from, int to, ChessPiece moved, ChessPiece captured, ChessGame.TeamColor turn, int halfmoveClock) {
+        if (size == squares.length) {
+            grow();
+        }
+        squares[size] = from | to << 6 | turn.ordinal() << 12;
+        movedPieces[size] = moved;
+        capturedPieces[size] = captured;
+        halfmoveClocks[size] = halfmoveClock;
+        size++;
+    }
+
+    /**
+     * Removes the most recent entry
+     *
+     * @return the index of the removed entry, which stays readable until the next push
+     */
+    int pop() {
+        return --size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int from(int entry) {
+        return squares[entry] & 63;
+    }
+
+    int to(int entry) {
+        return (squares[entry] >>> 6) & 63;
+    }
+
+    ChessGame.TeamColor turn(int entry) {
+        return (squares[entry] >>> 12) == 0 ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+    }
+
+    ChessPiece moved(int entry) {
+        return movedPieces[entry];
+    }
+
+    ChessPiece captured(int entry) {
+        return capturedPieces[entry];
+    }
+
+    int halfmoveClock(int entry) {
+        return halfmoveClocks[entry];
+    }
+
+    private void grow() {
+        int capacity = squares.length * 2;
+        squares = Arrays.copyOf(squares, capacity);
+        movedPieces = Arrays.copyOf(movedPieces, capacity);
+        capturedPieces = Arrays.copyOf(capturedPieces, capacity);
+        halfmoveClocks = Arrays.copyOf(halfmoveClocks, capacity);
+    }
+}
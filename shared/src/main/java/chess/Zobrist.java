@@ -0,0 +1,37 @@
+package chess;
+
+/**
+ * Random keys for Zobrist hashing. A position's key is the XOR of the key for each piece on its
+ * square, plus the side key when it is black's turn, so a move only has to XOR out what left a
+ * square and XOR in what arrived.
+ * <p>
+ * The keys come from a fixed-seed splitmix64 sequence so they are the same in every JVM, which
+ * keeps stored keys meaningful across restarts.
+ */
+final class Zobrist {
+
+    // indexed by color * 6 + piece type, then square
+    static final long[][] PIECE_KEYS = new long[12][64];
+    static final long BLACK_TO_MOVE;
+
+    static {
+        long state = 0x6A09E667F3BCC909L;
+        for (long[] keys : PIECE_KEYS) {
+            for (int square = 0; square < 64; square++) {
+                state += 0x9E3779B97F4A7C15L;
+                keys[square] = mix(state);
+            }
+        }
+        state += 0x9E3779B97F4A7C15L;
+        BLACK_TO_MOVE = mix(state);
+    }
+
+    private Zobrist() {
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,168 @@
+package engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Perfect win/draw answers for endgames of king and one piece against a lone king, read from
+ * files written by {@link BitbaseGenerator}.
+ * <p>
+ * Each file holds one bit per arrangement of the two kings, the piece and the side to move,
+ * set when the side with the piece wins. The other side can never win these endgames, so one bit
+ * is all it takes and a whole file is 64 KB. Files are mapped into memory, so probing is a few
+ * array reads.
+ */
+public final class Bitbase {
+
+    /**
+     * The endgames covered, named for the pieces of the side that is ahead and then the side
+     * that isn't
+     */
+    public enum Material {
+        KQK(ChessPiece.PieceType.QUEEN),
+        KRK(ChessPiece.PieceType.ROOK),
+        KPK(ChessPiece.PieceType.PAWN);
+
+        final ChessPiece.PieceType piece;
+
+        Material(ChessPiece.PieceType piece) {
+            this.piece = piece;
+        }
+
+        String fileName() {
+            return name() + ".bin";
+        }
+
+        static Material of(ChessPiece.PieceType piece) {
+            for (Material material : values()) {
+                if (material.piece == piece) {
+                    return material;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The result of a position with best play, for the side to move
+     */
+    public enum Outcome {
+        WIN,
+        DRAW,
+        LOSS
+    }
+
+    /** Positions per table: side to move, then the ahead side's king, the other king and the piece */
+    static final int SIZE = 2 * 64 * 64 * 64;
+
+    private final Map<Material, ByteBuffer> tables;
+
+    private Bitbase(Map<Material, ByteBuffer> tables) {
+        this.tables = tables;
+    }
+
+    /**
+     * Maps whichever bitbase files are in the directory
+     *
+     * @param directory where the files were written
+     * @return the bitbases, which may cover no endgames at all if there were no files
+     * @throws IOException if a file can't be read or is the wrong size
+     */
+    public static Bitbase open(Path directory) throws IOException {
+        Map<Material, ByteBuffer> tables = new EnumMap<>(Material.class);
+        for (Material material : Material.values()) {
+            Path path = directory.resolve(material.fileName());
+            if (!Files.isRegularFile(path)) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (channel.size() != SIZE / 8) {
+                    throw new IOException("Not a bitbase: " + path);
+                }
+                tables.put(material, channel.map(FileChannel.MapMode.READ_ONLY, 0, SIZE / 8));
+            }
+        }
+        return new Bitbase(tables);
+    }
+
+    /**
+     * @return True if the endgame's file was found
+     */
+    public boolean covers(Material material) {
+        return tables.containsKey(material);
+    }
+
+    /**
+     * Looks up a position. The position has to be legal, with the side not to move out of check
+     *
+     * @param game the position to look up
+     * @return the outcome for the side to move, or null if the pieces on the board aren't an
+     * endgame these bitbases cover
+     */
+    public Outcome probe(ChessGame game) {
+        ChessBoard board = game.getBoard();
+        int[] kings = {-1, -1};
+        int piece = -1;
+        ChessPiece extra = null;
+        for (int square = 0; square < 64; square++) {
+            ChessPiece found = board.getPiece(ChessPosition.of(square / 8 + 1, square % 8 + 1));
+            if (found == null) {
+                continue;
+            }
+            if (found.getPieceType() == ChessPiece.PieceType.KING) {
+                kings[found.getTeamColor().ordinal()] = square;
+            } else if (extra == null) {
+                extra = found;
+                piece = square;
+            } else {
+                return null;
+            }
+        }
+
+        Material material = extra == null ? null : Material.of(extra.getPieceType());
+        if (material == null || kings[0] < 0 || kings[1] < 0 || !tables.containsKey(material)) {
+            return null;
+        }
+
+        // tables are built with the ahead side as white, so flip the board for black
+        ChessGame.TeamColor ahead = extra.getTeamColor();
+        int flip = ahead == ChessGame.TeamColor.WHITE ? 0 : 56;
+        boolean aheadToMove = game.getTeamTurn() == ahead;
+        boolean wins = probe(material, aheadToMove,
+                kings[ahead.ordinal()] ^ flip, kings[ahead.opponent().ordinal()] ^ flip, piece ^ flip);
+        if (!wins) {
+            return Outcome.DRAW;
+        }
+        return aheadToMove ? Outcome.WIN : Outcome.LOSS;
+    }
+
+    /**
+     * Looks up a position by square indexes (0 for a1 up to 63 for h8), with the side that is
+     * ahead playing white
+     *
+     * @return True if the side that is ahead wins
+     */
+    public boolean probe(Material material, boolean aheadToMove, int aheadKing, int otherKing, int piece) {
+        ByteBuffer table = tables.get(material);
+        if (table == null) {
+            throw new IllegalArgumentException("No bitbase loaded for " + material);
+        }
+        int index = index(aheadToMove, aheadKing, otherKing, piece);
+        return (table.get(index >>> 3) & (1 << (index & 7))) != 0;
+    }
+
+    static int index(boolean aheadToMove, int aheadKing, int otherKing, int piece) {
+        return (aheadToMove ? 0 : 1) << 18 | aheadKing << 12 | otherKing << 6 | piece;
+    }
+}
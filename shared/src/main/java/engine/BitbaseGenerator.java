@@ -0,0 +1,314 @@
+package engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.IntMoveList;
+import chess.PackedMove;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Builds {@link Bitbase} tables by retrograde analysis.
+ * <p>
+ * First every arrangement of the pieces is set up on a board and its legal moves are generated
+ * once, with each move turned into the index of the position it leads to. Checkmates of the
+ * lone king are wins. Then the table is swept over and over: a position is won if the side that
+ * is ahead has a move to a won position, or if every move of the other side leads to one. When a
+ * sweep finds nothing new, everything still undecided is a draw.
+ * <p>
+ * Both the setup and each sweep split the table into chunks across a fork-join pool. Sweeps
+ * update the table in place; a position can only ever go from undecided to won, so a chunk
+ * seeing another chunk's update early just means the sweep gets further.
+ * <p>
+ * Pawn endgames can promote into the queen and rook endgames, so those are generated first.
+ */
+public final class BitbaseGenerator {
+
+    private static final int CHUNK = 1 << 12;
+
+    private static final byte UNKNOWN = 0;
+    private static final byte WIN = 1;
+    private static final byte DRAW = 2;
+    private static final byte INVALID = 3;
+
+    // successor codes below zero: a draw, or a position in another table after a promotion
+    private static final int DRAWN = -1;
+
+    private final ForkJoinPool pool;
+    private final Map<Bitbase.Material, long[]> results = new EnumMap<>(Bitbase.Material.class);
+
+    public BitbaseGenerator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Generates a table, along with any table it depends on that hasn't been generated yet
+     *
+     * @return one bit per position, set when the side that is ahead wins
+     */
+    public long[] generate(Bitbase.Material material) {
+        long[] bits = results.get(material);
+        if (bits != null) {
+            return bits;
+        }
+        if (material == Bitbase.Material.KPK) {
+            generate(Bitbase.Material.KQK);
+            generate(Bitbase.Material.KRK);
+        }
+
+        byte[] state = new byte[Bitbase.SIZE];
+        int[][] successors = new int[Bitbase.SIZE][];
+        pool.invoke(new SetupTask(material, state, successors, 0, Bitbase.SIZE));
+        while (pool.invoke(new SweepTask(state, successors, 0, Bitbase.SIZE)) > 0) {
+            // keep sweeping until nothing changes
+        }
+
+        bits = new long[Bitbase.SIZE / 64];
+        for (int i = 0; i < Bitbase.SIZE; i++) {
+            if (state[i] == WIN) {
+                bits[i >>> 6] |= 1L << i;
+            }
+        }
+        results.put(material, bits);
+        return bits;
+    }
+
+    /**
+     * Generates every table and writes each to its own file in the directory
+     */
+    public void writeAll(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Bitbase.Material material : Bitbase.Material.values()) {
+            write(generate(material), directory.resolve(material.fileName()));
+        }
+    }
+
+    private static void write(long[] bits, Path path) throws IOException {
+        byte[] bytes = new byte[bits.length * 8];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (bits[i >>> 3] >>> (8 * (i & 7)));
+        }
+        try (OutputStream out = Files.newOutputStream(path)) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Sets up each position in a range on a board to find whether it can happen at all, whether
+     * it is already over, and where each of its moves leads
+     */
+    private final class SetupTask extends RecursiveAction {
+        private final Bitbase.Material material;
+        private final byte[] state;
+        private final int[][] successors;
+        private final int from;
+        private final int to;
+
+        SetupTask(Bitbase.Material material, byte[] state, int[][] successors, int from, int to) {
+            this.material = material;
+            this.state = state;
+            this.successors = successors;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SetupTask(material, state, successors, from, mid),
+                        new SetupTask(material, state, successors, mid, to));
+                return;
+            }
+
+            ChessBoard board = new ChessBoard();
+            ChessGame game = new ChessGame();
+            game.setBoard(board);
+            IntMoveList moves = new IntMoveList();
+            ChessPiece aheadKing = ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING);
+            ChessPiece otherKing = ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING);
+            ChessPiece extra = ChessPiece.of(ChessGame.TeamColor.WHITE, material.piece);
+            int[] placed = new int[0];
+
+            for (int i = from; i < to; i++) {
+                boolean aheadToMove = (i >>> 18) == 0;
+                int ak = (i >>> 12) & 63;
+                int ok = (i >>> 6) & 63;
+                int p = i & 63;
+                if (ak == ok || ak == p || ok == p || adjacent(ak, ok)
+                        || (material.piece == ChessPiece.PieceType.PAWN && (p < 8 || p >= 56))) {
+                    state[i] = INVALID;
+                    continue;
+                }
+
+                for (int square : placed) {
+                    board.addPiece(position(square), null);
+                }
+                board.addPiece(position(ak), aheadKing);
+                board.addPiece(position(ok), otherKing);
+                board.addPiece(position(p), extra);
+                placed = new int[]{ak, ok, p};
+
+                ChessGame.TeamColor toMove = aheadToMove ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+                game.setTeamTurn(toMove);
+                if (game.isInCheck(toMove.opponent())) {
+                    state[i] = INVALID;
+                    continue;
+                }
+
+                moves.clear();
+                game.legalMoves(moves);
+                if (moves.isEmpty()) {
+                    // only the lone king can be mated
+                    state[i] = !aheadToMove && game.isInCheck(toMove) ? WIN : DRAW;
+                    continue;
+                }
+
+                int[] next = new int[moves.size()];
+                for (int m = 0; m < moves.size(); m++) {
+                    next[m] = successor(moves.get(m), aheadToMove, ak, ok, p);
+                }
+                successors[i] = next;
+            }
+        }
+
+        private int successor(int move, boolean aheadToMove, int ak, int ok, int p) {
+            int start = PackedMove.from(move);
+            int end = PackedMove.to(move);
+            if (start == ak) {
+                return Bitbase.index(!aheadToMove, end, ok, p);
+            }
+            if (start == ok) {
+                // taking the piece leaves two bare kings
+                return end == p ? DRAWN : Bitbase.index(!aheadToMove, ak, end, p);
+            }
+            ChessPiece.PieceType promotion = PackedMove.promotion(move);
+            if (promotion != null) {
+                Bitbase.Material promoted = Bitbase.Material.of(promotion);
+                if (promoted == null) {
+                    // a lone bishop or knight can't mate
+                    return DRAWN;
+                }
+                return -2 - (promoted.ordinal() << 20 | Bitbase.index(!aheadToMove, ak, ok, end));
+            }
+            return Bitbase.index(!aheadToMove, ak, ok, end);
+        }
+    }
+
+    /**
+     * Marks newly won positions in a range
+     */
+    private final class SweepTask extends RecursiveTask<Integer> {
+        private final byte[] state;
+        private final int[][] successors;
+        private final int from;
+        private final int to;
+
+        SweepTask(byte[] state, int[][] successors, int from, int to) {
+            this.state = state;
+            this.successors = successors;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from > CHUNK) {
+                int mid = (from + to) >>> 1;
+                SweepTask low = new SweepTask(state, successors, from, mid);
+                SweepTask high = new SweepTask(state, successors, mid, to);
+                invokeAll(low, high);
+                return low.join() + high.join();
+            }
+
+            int changed = 0;
+            for (int i = from; i < to; i++) {
+                if (state[i] != UNKNOWN) {
+                    continue;
+                }
+                boolean aheadToMove = (i >>> 18) == 0;
+                boolean won = !aheadToMove;
+                for (int next : successors[i]) {
+                    boolean nextWon = won(next);
+                    if (aheadToMove && nextWon) {
+                        won = true;
+                        break;
+                    }
+                    if (!aheadToMove && !nextWon) {
+                        won = false;
+                        break;
+                    }
+                }
+                if (won) {
+                    state[i] = WIN;
+                    changed++;
+                }
+            }
+            return changed;
+        }
+
+        private boolean won(int next) {
+            if (next >= 0) {
+                return state[next] == WIN;
+            }
+            if (next == DRAWN) {
+                return false;
+            }
+            int code = -2 - next;
+            long[] other = results.get(Bitbase.Material.values()[code >>> 20]);
+            int index = code & ((1 << 20) - 1);
+            return (other[index >>> 6] & (1L << index)) != 0;
+        }
+    }
+
+    private static boolean adjacent(int a, int b) {
+        return Math.abs((a >>> 3) - (b >>> 3)) <= 1 && Math.abs((a & 7) - (b & 7)) <= 1;
+    }
+
+    private static ChessPosition position(int square) {
+        return ChessPosition.of(square / 8 + 1, square % 8 + 1);
+    }
+
+    /**
+     * Generates every table into a directory and reports how long each took and how fast the
+     * finished tables can be probed: {@code java engine.BitbaseGenerator [directory]}
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = Path.of(args.length > 0 ? args[0] : "bitbases");
+        BitbaseGenerator generator = new BitbaseGenerator(ForkJoinPool.commonPool());
+        for (Bitbase.Material material : Bitbase.Material.values()) {
+            long start = System.nanoTime();
+            long[] bits = generator.generate(material);
+            long wins = 0;
+            for (long word : bits) {
+                wins += Long.bitCount(word);
+            }
+            System.out.printf("%s: %d won positions in %.3f s%n", material, wins, (System.nanoTime() - start) / 1e9);
+        }
+        generator.writeAll(directory);
+
+        Bitbase bitbase = Bitbase.open(directory);
+        Random random = new Random(1);
+        int probes = 10_000_000;
+        int found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < probes; i++) {
+            if (bitbase.probe(Bitbase.Material.KPK, random.nextBoolean(), random.nextInt(64), random.nextInt(64), random.nextInt(64))) {
+                found++;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%d probes (%d wins) at %.1f ns each%n", probes, found, (double) nanos / probes);
+    }
+}
@@ -0,0 +1,340 @@
+package engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.IntMoveList;
+import chess.PackedMove;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Finds forced mates ("mate in N") for the side to move.
+ * <p>
+ * The search is depth-limited: the attacker only tries moves that give check, and the defender,
+ * who is then always in check, tries every evasion. A position is a mate in N if some check leaves
+ * the defender with no moves, or with only moves that allow a mate in N - 1. Shorter mates are
+ * tried first, so the answer is always the quickest mate.
+ * <p>
+ * Each of the attacker's first moves is proved on its own copy of the game as a separate task
+ * in a fork-join pool, and once one of them mates the others give up. Solving a batch of puzzles
+ * also runs each puzzle as a task, so a large batch keeps every core busy.
+ * <p>
+ * Restricting the attacker to checks is what keeps the search small, but it also means mates
+ * that start with a quiet move aren't found unless the solver is created with checksOnly off.
+ */
+public final class MateSolver {
+
+    /**
+     * @param line         the mating line, alternating attacker and defender moves and ending in
+     *                     mate, with the defender always choosing the longest resistance. Empty
+     *                     if no mate was found
+     * @param movesToMate  how many attacker moves the mate takes, or 0 if none was found
+     * @param nodes        how many positions were visited
+     * @param nanos        how long solving took
+     */
+    public record Result(List<ChessMove> line, int movesToMate, long nodes, long nanos) {
+        public boolean found() {
+            return movesToMate > 0;
+        }
+
+        public long nodesPerSecond() {
+            return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+        }
+
+        @Override
+        public String toString() {
+            String answer = found() ? "mate in " + movesToMate + " " + line : "no mate";
+            return String.format("%s: %d nodes in %.3f s (%d nodes/s)", answer, nodes, nanos / 1e9, nodesPerSecond());
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final boolean checksOnly;
+
+    public MateSolver() {
+        this(ForkJoinPool.commonPool(), true);
+    }
+
+    /**
+     * @param pool       the pool to solve on
+     * @param checksOnly whether the attacker only tries checking moves
+     */
+    public MateSolver(ForkJoinPool pool, boolean checksOnly) {
+        this.pool = pool;
+        this.checksOnly = checksOnly;
+    }
+
+    /**
+     * Finds the quickest mate for the side to move. The given game is not changed
+     *
+     * @param game     the position to solve
+     * @param maxMoves the longest mate to look for, in attacker moves
+     * @return the mating line, or an empty one if there is no mate in maxMoves or fewer
+     */
+    public Result solve(ChessGame game, int maxMoves) {
+        return pool.invoke(new PuzzleTask(game, maxMoves));
+    }
+
+    /**
+     * Checks a "mate in N" claim
+     *
+     * @return True if the side to move can force mate in exactly the given number of moves, and
+     * not sooner
+     */
+    public boolean verify(ChessGame game, int moves) {
+        return solve(game, moves).movesToMate() == moves;
+    }
+
+    /**
+     * Solves every puzzle in the batch at once, with the puzzles and their first moves all
+     * sharing the pool
+     *
+     * @return the results, in the same order as the games
+     */
+    public List<Result> solveAll(List<ChessGame> games, int maxMoves) {
+        List<PuzzleTask> tasks = new ArrayList<>(games.size());
+        for (ChessGame game : games) {
+            tasks.add(new PuzzleTask(game, maxMoves));
+        }
+        pool.invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                invokeAll(tasks);
+                return null;
+            }
+        });
+
+        List<Result> results = new ArrayList<>(tasks.size());
+        for (PuzzleTask task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    /**
+     * Solves one puzzle, one mate length at a time, forking a task per first move
+     */
+    private final class PuzzleTask extends RecursiveTask<Result> {
+        private final ChessGame game;
+        private final int maxMoves;
+
+        PuzzleTask(ChessGame game, int maxMoves) {
+            this.game = new ChessGame(game);
+            this.maxMoves = maxMoves;
+        }
+
+        @Override
+        protected Result compute() {
+            long start = System.nanoTime();
+            long nodes = 0;
+
+            IntMoveList firstMoves = new IntMoveList();
+            game.legalMoves(firstMoves);
+
+            for (int moves = 1; moves <= maxMoves; moves++) {
+                AtomicBoolean solved = new AtomicBoolean();
+                List<FirstMoveTask> tasks = new ArrayList<>(firstMoves.size());
+                for (int i = 0; i < firstMoves.size(); i++) {
+                    tasks.add(new FirstMoveTask(game, firstMoves.get(i), moves, solved));
+                }
+                ForkJoinTask.invokeAll(tasks);
+
+                int mate = 0;
+                for (FirstMoveTask task : tasks) {
+                    nodes += task.nodes;
+                    if (mate == 0 && task.join()) {
+                        mate = task.move;
+                    }
+                }
+                if (mate != 0) {
+                    Prover prover = new Prover(new ChessGame(game), moves, checksOnly, null);
+                    List<ChessMove> line = prover.line(mate, moves);
+                    nodes += prover.nodes;
+                    return new Result(line, moves, nodes, System.nanoTime() - start);
+                }
+            }
+            return new Result(List.of(), 0, nodes, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Proves whether one of the attacker's first moves forces mate in a given number of moves
+     */
+    private final class FirstMoveTask extends RecursiveTask<Boolean> {
+        private final ChessGame game;
+        private final int move;
+        private final int moves;
+        private final AtomicBoolean solved;
+        private long nodes;
+
+        FirstMoveTask(ChessGame game, int move, int moves, AtomicBoolean solved) {
+            this.game = game;
+            this.move = move;
+            this.moves = moves;
+            this.solved = solved;
+        }
+
+        @Override
+        protected Boolean compute() {
+            if (solved.get()) {
+                return false;
+            }
+            ChessGame copy = new ChessGame(game);
+            copy.playMove(move);
+            Prover prover = new Prover(copy, moves, checksOnly, solved);
+            boolean mates = (!checksOnly || copy.isInCheck(copy.getTeamTurn())) && prover.defenderLoses(moves, 0);
+            nodes = prover.nodes + 1;
+            if (mates && !prover.stopped()) {
+                solved.set(true);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Does the actual proving on a single thread, playing moves forward and back on its own game
+     */
+    private static final class Prover {
+        private final ChessGame game;
+        private final boolean checksOnly;
+        private final AtomicBoolean stop;
+        private final IntMoveList[] lists;
+        private long nodes;
+
+        /**
+         * @param stop set by another task once the answer is known, or null to never stop early
+         */
+        Prover(ChessGame game, int moves, boolean checksOnly, AtomicBoolean stop) {
+            this.game = game;
+            this.checksOnly = checksOnly;
+            this.stop = stop;
+            this.lists = new IntMoveList[2 * moves + 1];
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = new IntMoveList();
+            }
+        }
+
+        boolean stopped() {
+            return stop != null && stop.get();
+        }
+
+        /**
+         * @return True if the attacker, to move, can mate within the given number of moves
+         */
+        boolean attackerMates(int moves, int ply) {
+            if (stopped()) {
+                return false;
+            }
+            IntMoveList list = lists[ply];
+            list.clear();
+            game.legalMoves(list);
+            for (int i = 0; i < list.size(); i++) {
+                game.playMove(list.get(i));
+                nodes++;
+                boolean mates = (!checksOnly || game.isInCheck(game.getTeamTurn())) && defenderLoses(moves, ply + 1);
+                game.unmakeMove();
+                if (mates) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return True if every move the defender, to move, has allows a mate within the attacker's
+         * remaining moves, counting the move just played
+         */
+        boolean defenderLoses(int moves, int ply) {
+            if (moves == 1) {
+                return game.status() == ChessGame.Status.CHECKMATE;
+            }
+            if (stopped()) {
+                return false;
+            }
+            IntMoveList list = lists[ply];
+            list.clear();
+            game.legalMoves(list);
+            if (list.isEmpty()) {
+                return game.isInCheck(game.getTeamTurn());
+            }
+            for (int i = 0; i < list.size(); i++) {
+                game.playMove(list.get(i));
+                nodes++;
+                boolean mated = attackerMates(moves - 1, ply + 1);
+                game.unmakeMove();
+                if (!mated) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Plays out a mate that is already known to work, with the defender picking whichever
+         * reply puts the mate off longest
+         *
+         * @param first the attacker's first move
+         * @param moves how many moves the mate takes
+         */
+        List<ChessMove> line(int first, int moves) {
+            List<ChessMove> line = new ArrayList<>();
+            IntMoveList candidates = new IntMoveList();
+            int move = first;
+            while (true) {
+                game.playMove(move);
+                line.add(PackedMove.toChessMove(move));
+                if (game.status() == ChessGame.Status.CHECKMATE) {
+                    return line;
+                }
+
+                // the defender's longest resistance
+                int reply = 0;
+                int longest = 0;
+                candidates.clear();
+                game.legalMoves(candidates);
+                for (int i = 0; i < candidates.size(); i++) {
+                    game.playMove(candidates.get(i));
+                    int needed = 1;
+                    while (needed < moves - 1 && !attackerMates(needed, 0)) {
+                        needed++;
+                    }
+                    game.unmakeMove();
+                    if (needed > longest) {
+                        longest = needed;
+                        reply = candidates.get(i);
+                    }
+                }
+                game.playMove(reply);
+                line.add(PackedMove.toChessMove(reply));
+                moves = longest;
+
+                // the attacker's quickest mate from there
+                candidates.clear();
+                game.legalMoves(candidates);
+                move = 0;
+                for (int i = 0; i < candidates.size() && move == 0; i++) {
+                    game.playMove(candidates.get(i));
+                    if ((!checksOnly || game.isInCheck(game.getTeamTurn())) && defenderLoses(moves, 0)) {
+                        move = candidates.get(i);
+                    }
+                    game.unmakeMove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Solves a position from the command line: {@code java engine.MateSolver <moves> <fen>}
+     */
+    public static void main(String[] args) {
+        int moves = Integer.parseInt(args[0]);
+        ChessGame game = ChessGame.fromFen(args[1]);
+        System.out.println(new MateSolver().solve(game, moves));
+    }
+}
@@ -0,0 +1,249 @@
+package engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.IntMoveList;
+import chess.PackedMove;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * A read-only opening book: for each position, the moves worth playing and how often to play them.
+ * <p>
+ * The file uses the Polyglot layout, a sorted run of 16-byte big-endian entries holding the
+ * position key, the move, a weight and a learn value that is ignored. Moves use the same bits as
+ * a {@link PackedMove} without the capture flag. The position keys are
+ * {@link ChessGame#positionKey()} rather than Polyglot's own hash, so books have to be written with
+ * {@link OpeningBookWriter}; existing Polyglot books won't match any position.
+ * <p>
+ * The file is mapped into memory rather than read, so opening even a very large book is instant
+ * and takes no heap, and lookups are a binary search that only touches the pages it needs. A book
+ * can be shared between threads.
+ * <p>
+ * {@link #openDefault()} finds the book the client and server use: the file named by the
+ * chess.book property, else book.bin in the working directory, else a small book of common
+ * openings built from the lines in openings.txt next to this class.
+ */
+public final class OpeningBook {
+
+    static final int ENTRY_BYTES = 16;
+    /** The property naming the book file */
+    public static final String PROPERTY = "chess.book";
+    /** The book file looked for in the working directory when the property isn't set */
+    public static final String DEFAULT_FILE = "book.bin";
+    static final String BUNDLED_LINES = "openings.txt";
+
+    /**
+     * @param move   a move from the position
+     * @param weight how strongly the book recommends it, relative to the position's other moves
+     */
+    public record Entry(ChessMove move, int weight) {
+    }
+
+    private final ByteBuffer entries;
+    private final int size;
+
+    private OpeningBook(ByteBuffer entries) {
+        this.entries = entries;
+        this.size = entries.capacity() / ENTRY_BYTES;
+    }
+
+    /**
+     * Maps a book file into memory. The mapping stays valid until the book is garbage collected
+     *
+     * @param path the book file
+     * @return the book
+     * @throws IOException if the file can't be read, isn't a whole number of entries, or is
+     *                     larger than 2 GB
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length % ENTRY_BYTES != 0 || length > Integer.MAX_VALUE) {
+                throw new IOException("Not an opening book: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            return new OpeningBook(buffer);
+        }
+    }
+
+    /**
+     * Opens the book named by the chess.book property, or book.bin in the working directory, or
+     * failing both the book of common openings that ships with this class
+     *
+     * @return the book
+     * @throws IOException if the named book can't be read
+     */
+    public static OpeningBook openDefault() throws IOException {
+        String named = System.getProperty(PROPERTY);
+        if (named != null) {
+            return open(Path.of(named));
+        }
+        Path path = Path.of(DEFAULT_FILE);
+        if (Files.isRegularFile(path)) {
+            return open(path);
+        }
+        return openBundled();
+    }
+
+    /**
+     * Builds the book of common openings into a temporary file and maps it
+     */
+    static OpeningBook openBundled() throws IOException {
+        OpeningBookWriter writer = new OpeningBookWriter();
+        try (InputStream in = OpeningBook.class.getResourceAsStream(BUNDLED_LINES)) {
+            if (in == null) {
+                throw new IOException("Missing " + BUNDLED_LINES);
+            }
+            writer.addLines(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        }
+        Path path = Files.createTempFile("book", ".bin");
+        path.toFile().deleteOnExit();
+        writer.write(path);
+        return open(path);
+    }
+
+    /**
+     * Lists book moves as text for a player, each with its share of the total weight, such as
+     * {@code Book moves:\n  e2 e4 (60%)\n  d2 d4 (40%)\n}
+     *
+     * @param moves moves from lookup
+     */
+    public static String describe(List<Entry> moves) {
+        if (moves.isEmpty()) {
+            return "No book moves for this position";
+        }
+        int total = 0;
+        for (Entry entry : moves) {
+            total += entry.weight();
+        }
+        StringBuilder text = new StringBuilder("Book moves:\n");
+        for (Entry entry : moves) {
+            ChessMove move = entry.move();
+            int share = total == 0 ? 0 : entry.weight() * 100 / total;
+            text.append("  ").append(squareName(move.getStartPosition())).append(' ')
+                    .append(squareName(move.getEndPosition())).append(" (").append(share).append("%)\n");
+        }
+        return text.toString();
+    }
+
+    private static String squareName(ChessPosition position) {
+        return "" + (char) ('a' + position.getColumn() - 1) + position.getRow();
+    }
+
+    /**
+     * @return how many entries the book holds
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the book moves for the side to move. Moves that aren't legal in the game, which can
+     * only happen if two positions share a key, are left out
+     *
+     * @param game the position to look up
+     * @return the moves, highest weight first, or an empty list if the position isn't in the book
+     */
+    public List<Entry> lookup(ChessGame game) {
+        long key = game.positionKey();
+        int index = firstIndex(key);
+        if (index == size) {
+            return List.of();
+        }
+
+        IntMoveList legal = new IntMoveList();
+        game.legalMoves(legal);
+
+        List<Entry> found = new ArrayList<>();
+        for (; index < size && keyAt(index) == key; index++) {
+            int move = moveAt(index);
+            for (int i = 0; i < legal.size(); i++) {
+                if ((legal.get(i) & ~PackedMove.CAPTURE) == move) {
+                    found.add(new Entry(PackedMove.toChessMove(move), weightAt(index)));
+                    break;
+                }
+            }
+        }
+        found.sort(Comparator.comparingInt(Entry::weight).reversed());
+        return found;
+    }
+
+    /**
+     * @return the book's highest weighted move for the position, or null if it isn't in the book
+     */
+    public ChessMove bestMove(ChessGame game) {
+        List<Entry> found = lookup(game);
+        return found.isEmpty() ? null : found.get(0).move();
+    }
+
+    /**
+     * Picks one of the book moves at random, each in proportion to its weight
+     *
+     * @return the chosen move, or null if the position isn't in the book
+     */
+    public ChessMove pickMove(ChessGame game, RandomGenerator random) {
+        List<Entry> found = lookup(game);
+        int total = 0;
+        for (Entry entry : found) {
+            total += entry.weight();
+        }
+        if (total == 0) {
+            return found.isEmpty() ? null : found.get(0).move();
+        }
+
+        int pick = random.nextInt(total);
+        for (Entry entry : found) {
+            pick -= entry.weight();
+            if (pick < 0) {
+                return entry.move();
+            }
+        }
+        return found.get(found.size() - 1).move();
+    }
+
+    /**
+     * @return the index of the first entry whose key is at least the given key, comparing
+     * unsigned as the book is sorted, or size if there isn't one
+     */
+    private int firstIndex(long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(keyAt(mid), key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private long keyAt(int index) {
+        return entries.getLong(index * ENTRY_BYTES);
+    }
+
+    private int moveAt(int index) {
+        return entries.getShort(index * ENTRY_BYTES + 8) & 0xFFFF;
+    }
+
+    private int weightAt(int index) {
+        return entries.getShort(index * ENTRY_BYTES + 10) & 0xFFFF;
+    }
+}
@@ -0,0 +1,158 @@
+package engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import chess.PackedMove;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects weighted moves by position and writes them out as an {@link OpeningBook} file.
+ * Adding the same move from the same position again adds to its weight, so a book can be built
+ * by feeding in every game of a collection.
+ * <p>
+ * From the command line, {@code java engine.OpeningBookWriter lines.txt book.bin} builds a book
+ * from a text file of lines in the format read by {@link #addLines}. The client and server pick
+ * it up from the chess.book property, or from book.bin in the working directory.
+ */
+public final class OpeningBookWriter {
+
+    private record Key(long position, int move) {
+    }
+
+    private final Map<Key, Integer> weights = new HashMap<>();
+
+    /**
+     * @param game   the position the move is played from
+     * @param move   the move
+     * @param weight how much to add to the move's weight
+     */
+    public void add(ChessGame game, ChessMove move, int weight) {
+        int packed = PackedMove.of(move) & ~PackedMove.CAPTURE;
+        weights.merge(new Key(game.positionKey(), packed), weight, Integer::sum);
+    }
+
+    /**
+     * Adds every position along a line of moves from the starting position, giving each move
+     * the given weight
+     *
+     * @param moves  the moves of the line, which have to be legal
+     * @param weight how much to add to each move's weight
+     */
+    public void addLine(List<ChessMove> moves, int weight) {
+        ChessGame game = new ChessGame();
+        for (ChessMove move : moves) {
+            add(game, move, weight);
+            game.playMove(move);
+        }
+    }
+
+    /**
+     * Adds lines of moves written as text, one line per row. Each row is a weight followed by
+     * the moves from the starting position, each written as its start and end squares plus a
+     * promotion letter if it has one, such as {@code 5 e2e4 e7e5 g1f3}. Blank rows and rows
+     * starting with # are skipped
+     *
+     * @param lines the rows to read
+     * @throws IllegalArgumentException if a row can't be read or has an illegal move
+     */
+    public void addLines(BufferedReader lines) throws IOException {
+        String row;
+        int number = 0;
+        while ((row = lines.readLine()) != null) {
+            number++;
+            row = row.strip();
+            if (row.isEmpty() || row.startsWith("#")) {
+                continue;
+            }
+            String[] fields = row.split("\\s+");
+            try {
+                int weight = Integer.parseInt(fields[0]);
+                ChessGame game = new ChessGame();
+                for (int i = 1; i < fields.length; i++) {
+                    ChessMove move = parseMove(fields[i]);
+                    add(game, move, weight);
+                    game.makeMove(move);
+                }
+            } catch (NumberFormatException | InvalidMoveException e) {
+                throw new IllegalArgumentException("Bad opening line " + number + ": " + row, e);
+            }
+        }
+    }
+
+    /**
+     * @param text a move such as e2e4 or e7e8q
+     */
+    static ChessMove parseMove(String text) {
+        if (text.length() != 4 && text.length() != 5) {
+            throw new IllegalArgumentException("Not a move: " + text);
+        }
+        ChessPiece.PieceType promotion = null;
+        if (text.length() == 5) {
+            promotion = switch (text.charAt(4)) {
+                case 'q' -> ChessPiece.PieceType.QUEEN;
+                case 'r' -> ChessPiece.PieceType.ROOK;
+                case 'b' -> ChessPiece.PieceType.BISHOP;
+                case 'n' -> ChessPiece.PieceType.KNIGHT;
+                default -> throw new IllegalArgumentException("Not a promotion: " + text);
+            };
+        }
+        return new ChessMove(square(text, 0), square(text, 2), promotion);
+    }
+
+    private static ChessPosition square(String text, int at) {
+        int col = text.charAt(at) - 'a' + 1;
+        int row = text.charAt(at + 1) - '0';
+        if (col < 1 || col > 8 || row < 1 || row > 8) {
+            throw new IllegalArgumentException("Not a move: " + text);
+        }
+        return new ChessPosition(row, col);
+    }
+
+    /**
+     * Writes the book, sorted by position key. Weights too big for the format are capped
+     *
+     * @param path the file to write
+     */
+    public void write(Path path) throws IOException {
+        List<Map.Entry<Key, Integer>> sorted = new ArrayList<>(weights.entrySet());
+        sorted.sort((a, b) -> {
+            int byPosition = Long.compareUnsigned(a.getKey().position(), b.getKey().position());
+            return byPosition != 0 ? byPosition : Integer.compare(b.getValue(), a.getValue());
+        });
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            for (Map.Entry<Key, Integer> entry : sorted) {
+                out.writeLong(entry.getKey().position());
+                out.writeShort(entry.getKey().move());
+                out.writeShort(Math.min(entry.getValue(), 0xFFFF));
+                out.writeInt(0);
+            }
+        }
+    }
+
+    /**
+     * Builds a book from the command line: {@code java engine.OpeningBookWriter <lines.txt> <book.bin>}
+     */
+    public static void main(String[] args) throws IOException {
+        OpeningBookWriter writer = new OpeningBookWriter();
+        try (BufferedReader lines = Files.newBufferedReader(Path.of(args[0]), StandardCharsets.UTF_8)) {
+            writer.addLines(lines);
+        }
+        writer.write(Path.of(args[1]));
+        System.out.println("Wrote " + writer.weights.size() + " entries to " + args[1]);
+    }
+}
@@ -0,0 +1,427 @@
+package engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.IntMoveList;
+import chess.PackedMove;
+
+/**
+ * Finds the best move in a position with a negamax alpha-beta search.
+ * <p>
+ * The search deepens one move at a time until it runs out of depth, nodes or time, keeping the
+ * best move from the last depth it finished. Each depth is ordered by the best moves of the one
+ * before it, which the transposition table remembers, then by captures of the most valuable piece
+ * and then by moves that caused cutoffs at the same depth ("killers"). Captures are followed past
+ * the depth limit until the position is quiet so the score isn't taken in the middle of a trade.
+ * <p>
+ * A Search reuses its table and buffers between calls and is not thread safe; give each thread
+ * its own.
+ */
+public final class Search {
+
+    /** Score for delivering checkmate right now, less one for every move it takes to get there */
+    public static final int MATE = 30000;
+    /** The deepest the search will go, including extensions and captures */
+    public static final int MAX_PLY = 100;
+
+    private static final int INFINITY = 32000;
+    private static final int MATE_BOUND = MATE - MAX_PLY;
+
+    // for ordering captures, indexed by PieceType ordinal: king, queen, bishop, knight, rook, pawn
+    private static final int[] PIECE_VALUES = {0, 900, 330, 320, 500, 100};
+
+    /**
+     * How far a search may go. The search stops at whichever limit it reaches first
+     *
+     * @param depth  deepest iteration to search
+     * @param nodes  most positions to visit
+     * @param millis most time to spend, in milliseconds
+     */
+    public record Limits(int depth, long nodes, long millis) {
+        public static Limits depth(int depth) {
+            return new Limits(depth, Long.MAX_VALUE, Long.MAX_VALUE);
+        }
+
+        public static Limits nodes(long nodes) {
+            return new Limits(MAX_PLY, nodes, Long.MAX_VALUE);
+        }
+
+        public static Limits millis(long millis) {
+            return new Limits(MAX_PLY, Long.MAX_VALUE, millis);
+        }
+    }
+
+    /**
+     * @param bestMove the move to play, or null if the side to move has no legal moves
+     * @param score    how good the position is for the side to move, in centipawns, or a mate
+     *                 score within MAX_PLY of MATE or -MATE
+     * @param depth    the deepest iteration that finished
+     * @param nodes    how many positions were visited
+     * @param nanos    how long the search took
+     */
+    public record Result(ChessMove bestMove, int score, int depth, long nodes, long nanos) {
+        public long nodesPerSecond() {
+            return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+        }
+
+        /**
+         * @return True if the score is a forced mate for either side
+         */
+        public boolean isMate() {
+            return Math.abs(score) >= MATE_BOUND;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s score %d depth %d: %d nodes in %.3f s (%d nodes/s)",
+                    bestMove, score, depth, nodes, nanos / 1e9, nodesPerSecond());
+        }
+    }
+
+    private final TranspositionTable table;
+    private final IntMoveList generated = new IntMoveList();
+    private final int[][] moves = new int[MAX_PLY][256];
+    private final int[][] scores = new int[MAX_PLY][256];
+    private final int[][] killers = new int[MAX_PLY][2];
+
+    private ChessGame game;
+    private long nodes;
+    private long nodeLimit;
+    private long deadline;
+    private boolean stopped;
+    private int rootBest;
+
+    public Search() {
+        this(16);
+    }
+
+    /**
+     * @param hashMegabytes how much memory the transposition table may use
+     */
+    public Search(int hashMegabytes) {
+        table = new TranspositionTable(hashMegabytes);
+    }
+
+    /**
+     * Searches for the best move for the side to move. The given game is not changed
+     *
+     * @param position the position to search
+     * @param limits   when to stop searching
+     * @return the best move found along with how deep and how fast the search went
+     */
+    public Result search(ChessGame position, Limits limits) {
+        long start = System.nanoTime();
+        game = new ChessGame(position);
+        nodes = 0;
+        nodeLimit = limits.nodes();
+        deadline = limits.millis() >= Long.MAX_VALUE / 1_000_000 ? Long.MAX_VALUE : start + limits.millis() * 1_000_000;
+        stopped = false;
+        for (int[] killer : killers) {
+            killer[0] = 0;
+            killer[1] = 0;
+        }
+
+        int bestMove = 0;
+        int bestScore = 0;
+        int completed = 0;
+        int maxDepth = Math.min(limits.depth(), MAX_PLY - 1);
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            rootBest = 0;
+            int score = negamax(depth, 0, -INFINITY, INFINITY);
+            if (stopped) {
+                // a partly searched depth still tried the previous best move first, so its
+                // answer is only worth taking if nothing has finished yet
+                if (completed == 0) {
+                    bestMove = rootBest;
+                }
+                break;
+            }
+            bestMove = rootBest;
+            bestScore = score;
+            completed = depth;
+            if (bestMove == 0 || Math.abs(score) >= MATE_BOUND) {
+                // no moves, or a forced mate that a deeper search can't improve on
+                break;
+            }
+        }
+
+        if (bestMove == 0) {
+            // stopped before the first move was searched, play anything legal
+            generated.clear();
+            game.legalMoves(generated);
+            if (!generated.isEmpty()) {
+                bestMove = generated.get(0);
+            }
+        }
+        ChessMove move = bestMove == 0 ? null : PackedMove.toChessMove(bestMove);
+        return new Result(move, bestScore, completed, nodes, System.nanoTime() - start);
+    }
+
+    public void clearTable() {
+        table.clear();
+    }
+
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        if (outOfBudget()) {
+            return 0;
+        }
+
+        boolean inCheck = game.isInCheck(game.getTeamTurn());
+        if (inCheck) {
+            // look one move further when in check so forcing lines aren't cut off early
+            depth++;
+        }
+        if (depth <= 0) {
+            return quiesce(ply, alpha, beta);
+        }
+        if (ply >= MAX_PLY - 1) {
+            return evaluate();
+        }
+
+        long key = game.positionKey();
+        long entry = table.probe(key);
+        int tableMove = 0;
+        if (entry != 0) {
+            tableMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int count = generate(ply, tableMove, false);
+        if (count == 0) {
+            return inCheck ? -MATE + ply : 0;
+        }
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = 0;
+        int[] plyMoves = moves[ply];
+        for (int i = 0; i < count; i++) {
+            pickNext(ply, i, count);
+            int move = plyMoves[i];
+
+            game.playMove(move);
+            int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+            game.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (ply == 0) {
+                    rootBest = move;
+                }
+            }
+            if (score > alpha) {
+                alpha = score;
+            }
+            if (alpha >= beta) {
+                if (!PackedMove.isCapture(move) && killers[ply][0] != move) {
+                    killers[ply][1] = killers[ply][0];
+                    killers[ply][0] = move;
+                }
+                break;
+            }
+        }
+
+        int bound = best >= beta ? TranspositionTable.LOWER
+                : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(key, bestMove, toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    /**
+     * Searches captures and promotions only until the position is quiet. The side to move may
+     * always decline to capture ("stand pat"), unless it is in check, in which case every
+     * evasion is searched so mates at the end of a capture sequence are still seen
+     */
+    private int quiesce(int ply, int alpha, int beta) {
+        if (outOfBudget()) {
+            return 0;
+        }
+
+        boolean inCheck = game.isInCheck(game.getTeamTurn());
+        int best = -INFINITY;
+        if (!inCheck) {
+            best = evaluate();
+            if (best >= beta || ply >= MAX_PLY - 1) {
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+        } else if (ply >= MAX_PLY - 1) {
+            return evaluate();
+        }
+
+        int count = generate(ply, 0, !inCheck);
+        if (count == 0 && inCheck) {
+            return -MATE + ply;
+        }
+
+        int[] plyMoves = moves[ply];
+        for (int i = 0; i < count; i++) {
+            pickNext(ply, i, count);
+            game.playMove(plyMoves[i]);
+            int score = -quiesce(ply + 1, -beta, -alpha);
+            game.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > best) {
+                best = score;
+            }
+            if (score > alpha) {
+                alpha = score;
+                if (alpha >= beta) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return True once a node or time limit has been reached. The clock is only read every
+     * 1024 nodes since it is far slower than searching a node
+     */
+    private boolean outOfBudget() {
+        if (stopped) {
+            return true;
+        }
+        if (nodes >= nodeLimit || ((nodes & 1023) == 0 && System.nanoTime() >= deadline)) {
+            stopped = true;
+            return true;
+        }
+        nodes++;
+        return false;
+    }
+
+    /**
+     * Fills this ply's move buffer with the legal moves, or only the captures and promotions,
+     * and gives each a score to order it by
+     *
+     * @return how many moves there are
+     */
+    private int generate(int ply, int tableMove, boolean capturesOnly) {
+        generated.clear();
+        game.legalMoves(generated);
+
+        ChessBoard board = game.getBoard();
+        int[] plyMoves = moves[ply];
+        int[] plyScores = scores[ply];
+        int count = 0;
+        for (int i = 0; i < generated.size(); i++) {
+            int move = generated.get(i);
+            boolean capture = PackedMove.isCapture(move);
+            ChessPiece.PieceType promotion = PackedMove.promotion(move);
+            if (capturesOnly && !capture && promotion == null) {
+                continue;
+            }
+
+            int score;
+            if (move == tableMove) {
+                score = 1 << 30;
+            } else if (capture) {
+                // most valuable victim first, then least valuable attacker
+                score = (1 << 20) + valueAt(board, PackedMove.to(move)) * 16 - valueAt(board, PackedMove.from(move)) / 100;
+            } else if (promotion == ChessPiece.PieceType.QUEEN) {
+                score = 1 << 19;
+            } else if (move == killers[ply][0]) {
+                score = 1 << 18;
+            } else if (move == killers[ply][1]) {
+                score = (1 << 18) - 1;
+            } else {
+                score = 0;
+            }
+            if (promotion != null) {
+                score += PIECE_VALUES[promotion.ordinal()];
+            }
+            plyMoves[count] = move;
+            plyScores[count] = score;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Moves the best-scoring of the remaining moves into position i. Most nodes cut off after a
+     * move or two, so this is cheaper than sorting the whole list up front
+     */
+    private void pickNext(int ply, int i, int count) {
+        int[] plyMoves = moves[ply];
+        int[] plyScores = scores[ply];
+        int best = i;
+        for (int j = i + 1; j < count; j++) {
+            if (plyScores[j] > plyScores[best]) {
+                best = j;
+            }
+        }
+        if (best != i) {
+            int move = plyMoves[i];
+            plyMoves[i] = plyMoves[best];
+            plyMoves[best] = move;
+            int score = plyScores[i];
+            plyScores[i] = plyScores[best];
+            plyScores[best] = score;
+        }
+    }
+
+    private static int valueAt(ChessBoard board, int square) {
+        ChessPiece piece = board.getPiece(ChessPosition.of(square / 8 + 1, square % 8 + 1));
+        return piece == null ? 0 : PIECE_VALUES[piece.getPieceType().ordinal()];
+    }
+
+    /**
+     * @return the static evaluation from the side to move's point of view
+     */
+    private int evaluate() {
+        int score = game.evaluate();
+        return game.getTeamTurn() == ChessGame.TeamColor.WHITE ? score : -score;
+    }
+
+    /**
+     * Mate scores count moves from the root, but the table is shared between positions at
+     * different distances from it, so they are stored as moves from the position itself
+     */
+    private static int toTable(int score, int ply) {
+        if (score >= MATE_BOUND) {
+            return score + ply;
+        }
+        if (score <= -MATE_BOUND) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE_BOUND) {
+            return score - ply;
+        }
+        if (score <= -MATE_BOUND) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /**
+     * Searches a position from the command line: {@code java engine.Search <millis> [fen]},
+     * searching the starting position if no FEN is given
+     */
+    public static void main(String[] args) {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 5000;
+        ChessGame game = args.length > 1 ? ChessGame.fromFen(args[1]) : new ChessGame();
+        System.out.println(new Search(64).search(game, Limits.millis(millis)));
+    }
+}
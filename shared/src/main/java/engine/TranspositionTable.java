@@ -0,0 +1,92 @@
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the result of searching each position, keyed by its Zobrist key, so a position
+ * reached again through a different move order doesn't have to be searched a second time.
+ * <p>
+ * Each slot is a key and one packed long of data. When two positions land in the same slot the
+ * one searched deeper is kept, unless the slot belongs to a different position, in which case the
+ * newer one always wins so stale entries from earlier searches don't linger.
+ */
+public final class TranspositionTable {
+
+    /** The stored score is exact */
+    public static final int EXACT = 1;
+    /** The stored score is a lower bound, the search failed high */
+    public static final int LOWER = 2;
+    /** The stored score is an upper bound, the search failed low */
+    public static final int UPPER = 3;
+
+    // data layout: move in bits 0-15, score in 16-31, depth in 32-39, bound in 40-41.
+    // a bound of 0 marks an empty slot
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+
+    /**
+     * @param megabytes roughly how much memory the table may use, rounded down to a power of two
+     *                  number of slots
+     */
+    public TranspositionTable(int megabytes) {
+        long slots = Math.max(1L, (long) megabytes * 1024 * 1024 / 16);
+        int size = Integer.highestOneBit((int) Math.min(slots, 1 << 30));
+        keys = new long[size];
+        data = new long[size];
+        mask = size - 1;
+    }
+
+    /**
+     * @return the data stored for the position, or 0 if there isn't any
+     */
+    public long probe(long key) {
+        int index = (int) key & mask;
+        return keys[index] == key ? data[index] : 0L;
+    }
+
+    public void store(long key, int move, int score, int depth, int bound) {
+        int index = (int) key & mask;
+        long old = data[index];
+        if (keys[index] == key && old != 0 && depth(old) > depth && bound != EXACT) {
+            return;
+        }
+        // keep the old move if this search didn't find one
+        if (move == 0 && keys[index] == key) {
+            move = move(old);
+        }
+        keys[index] = key;
+        data[index] = (move & 0xFFFFL)
+                | (score & 0xFFFFL) << 16
+                | (long) (depth & 0xFF) << 32
+                | (long) bound << 40;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+    }
+
+    /**
+     * @return how many slots the table has
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    public static int move(long entry) {
+        return (int) (entry & 0xFFFF);
+    }
+
+    public static int score(long entry) {
+        return (short) (entry >>> 16);
+    }
+
+    public static int depth(long entry) {
+        return (int) (entry >>> 32) & 0xFF;
+    }
+
+    public static int bound(long entry) {
+        return (int) (entry >>> 40) & 3;
+    }
+}
@@ -0,0 +1,194 @@
+package websocket;
+
+import chess.BoardSnapshot;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.PackedMove;
+import websocket.commands.UserGameCommand;
+import websocket.messages.ErrorMessage;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.MoveUpdateMessage;
+import websocket.messages.NotificationMessage;
+import websocket.messages.ServerMessage;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary frames for websocket traffic, for clients that connect with {@link #QUERY} on the
+ * websocket URL. Everyone else keeps getting JSON.
+ * <p>
+ * Every frame starts with a byte for the command or message type. After that:
+ * <ul>
+ *     <li>a command has its game ID as a varint, its auth token as a string, and its move as
+ *     two bytes in the {@link PackedMove} layout, or 0xFFFF for no move</li>
+ *     <li>LOAD_GAME has a byte that is 1 when there is a game, then the game as written by
+ *     {@link BoardSnapshot#writeTo}</li>
+ *     <li>ERROR and NOTIFICATION have their text as a string</li>
+ *     <li>MOVE_UPDATE has its move as two bytes like a command, a byte for the status and its
+ *     sequence number as a varint</li>
+ * </ul>
+ * A varint is 7 bits per byte, low bits first, with the top bit set on every byte but the
+ * last. A string is its UTF-8 length plus one as a varint, then the bytes; a length of 0
+ * means null.
+ */
+public final class BinaryCodec {
+
+    public static final String QUERY_PARAM = "encoding";
+    public static final String BINARY = "binary";
+    /** What a client adds to the websocket URL to be sent binary frames */
+    public static final String QUERY = QUERY_PARAM + "=" + BINARY;
+
+    private static final UserGameCommand.CommandType[] COMMAND_TYPES = UserGameCommand.CommandType.values();
+    private static final ServerMessage.ServerMessageType[] MESSAGE_TYPES = ServerMessage.ServerMessageType.values();
+    private static final ChessGame.Status[] STATUSES = ChessGame.Status.values();
+    private static final int NO_MOVE = 0xFFFF;
+
+    private BinaryCodec() {
+    }
+
+    public static ByteBuffer encode(UserGameCommand command) {
+        byte[] token = utf8(command.getAuthToken());
+        ByteBuffer out = ByteBuffer.allocate(1 + 5 + 5 + length(token) + 2);
+        out.put((byte) command.getCommandType().ordinal());
+        putVarint(out, command.getGameID());
+        putString(out, token);
+        putMove(out, command.getChessMove());
+        return out.flip();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the frame isn't a command
+     */
+    public static UserGameCommand decodeCommand(ByteBuffer frame) {
+        try {
+            UserGameCommand.CommandType type = COMMAND_TYPES[index(frame.get(), COMMAND_TYPES.length)];
+            int gameId = getVarint(frame);
+            String authToken = getString(frame);
+            return new UserGameCommand(type, authToken, gameId, getMove(frame));
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Command frame is cut short", e);
+        }
+    }
+
+    public static ByteBuffer encode(ServerMessage message) {
+        ServerMessage.ServerMessageType type = message.getServerMessageType();
+        ByteBuffer out;
+        if (message instanceof LoadGameMessage load) {
+            ChessGame game = load.getGame();
+            out = ByteBuffer.allocate(2 + BoardSnapshot.ENCODED_SIZE);
+            out.put((byte) type.ordinal());
+            out.put((byte) (game == null ? 0 : 1));
+            if (game != null) {
+                game.snapshot().writeTo(out);
+            }
+        } else if (message instanceof MoveUpdateMessage update) {
+            out = ByteBuffer.allocate(1 + 2 + 1 + 5);
+            out.put((byte) type.ordinal());
+            putMove(out, update.getMove());
+            out.put((byte) update.getStatus().ordinal());
+            putVarint(out, update.getSequence());
+        } else {
+            byte[] text = null;
+            if (message instanceof ErrorMessage error) {
+                text = utf8(error.getErrorMessage());
+            } else if (message instanceof NotificationMessage notification) {
+                text = utf8(notification.getMessage());
+            }
+            out = ByteBuffer.allocate(1 + 5 + length(text));
+            out.put((byte) type.ordinal());
+            putString(out, text);
+        }
+        return out.flip();
+    }
+
+    /**
+     * @return a LoadGameMessage, ErrorMessage, NotificationMessage or MoveUpdateMessage
+     * @throws IllegalArgumentException if the frame isn't a message
+     */
+    public static ServerMessage decodeMessage(ByteBuffer frame) {
+        try {
+            ServerMessage.ServerMessageType type = MESSAGE_TYPES[index(frame.get(), MESSAGE_TYPES.length)];
+            return switch (type) {
+                case LOAD_GAME -> new LoadGameMessage(type, frame.get() == 0 ? null : BoardSnapshot.readFrom(frame).toGame());
+                case ERROR -> new ErrorMessage(type, getString(frame));
+                case NOTIFICATION -> new NotificationMessage(type, getString(frame));
+                case MOVE_UPDATE -> {
+                    ChessMove move = getMove(frame);
+                    ChessGame.Status status = STATUSES[index(frame.get(), STATUSES.length)];
+                    yield new MoveUpdateMessage(type, move, status, getVarint(frame));
+                }
+            };
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Message frame is cut short", e);
+        }
+    }
+
+    private static int index(byte value, int count) {
+        if (value < 0 || value >= count) {
+            throw new IllegalArgumentException("Unknown type or status " + value);
+        }
+        return value;
+    }
+
+    private static void putMove(ByteBuffer out, ChessMove move) {
+        out.putShort((short) (move == null ? NO_MOVE : PackedMove.of(move)));
+    }
+
+    private static ChessMove getMove(ByteBuffer in) {
+        int move = in.getShort() & 0xFFFF;
+        return move == NO_MOVE ? null : PackedMove.toChessMove(move);
+    }
+
+    private static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint is too long");
+    }
+
+    // null stays null so it can be told apart from an empty string
+    private static byte[] utf8(String text) {
+        return text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putString(ByteBuffer out, byte[] bytes) {
+        if (bytes == null) {
+            putVarint(out, 0);
+            return;
+        }
+        putVarint(out, bytes.length + 1);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = getVarint(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new IllegalArgumentException("String runs past the end of the frame");
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -31,7 +31,11 @@ public class UserGameCommand {
         CONNECT,
         MAKE_MOVE,
         LEAVE,
-        RESIGN
+        RESIGN,
+        // asks for the opening book's moves, answered with a NOTIFICATION to the sender only
+        HINT,
+        // asks for the whole game again, after missing a move update
+        RESYNC
     }
 
     public CommandType getCommandType() {
@@ -4,13 +4,22 @@ import chess.ChessGame;
 
 public class LoadGameMessage extends ServerMessage{
     private final ChessGame game;
+    // centipawns, positive when white is ahead
+    private final int evaluation;
 
     public LoadGameMessage(ServerMessageType type, ChessGame game) {
         super(type);
-        this.game = game;
+        // a detached copy of the latest published position, so moves made on the game while
+        // this message waits to be serialized don't change what gets sent
+        this.game = game == null ? null : game.snapshot().toGame();
+        this.evaluation = this.game == null ? 0 : this.game.evaluate();
     }
 
     public ChessGame getGame() {
         return game;
     }
+
+    public int getEvaluation() {
+        return evaluation;
+    }
 }
@@ -0,0 +1,53 @@
+package websocket.messages;
+
+import chess.ChessGame;
+import chess.ChessMove;
+
+/**
+ * Sent after a move, instead of a whole LOAD_GAME, to clients that connected with
+ * {@link #QUERY} on the websocket URL. It carries just the move, where the game stands after it,
+ * and a sequence number, so a client that already has the game can play the move itself. A
+ * client whose game isn't at the sequence number just before this one has missed something, and
+ * should send a RESYNC command to get the whole game again.
+ */
+public class MoveUpdateMessage extends ServerMessage {
+
+    public static final String QUERY_PARAM = "updates";
+    public static final String MOVES = "moves";
+    /** What a client adds to the websocket URL to be sent move updates */
+    public static final String QUERY = QUERY_PARAM + "=" + MOVES;
+
+    private final ChessMove move;
+    private final ChessGame.Status status;
+    private final int sequence;
+
+    public MoveUpdateMessage(ServerMessageType type, ChessMove move, ChessGame.Status status, int sequence) {
+        super(type);
+        this.move = move;
+        this.status = status;
+        this.sequence = sequence;
+    }
+
+    /**
+     * @return the number of moves by either side the game has had, which is the sequence number
+     * of the update for its latest move
+     */
+    public static int sequence(ChessGame game) {
+        return (game.getFullmoveNumber() - 1) * 2 + (game.getTeamTurn() == ChessGame.TeamColor.BLACK ? 1 : 0);
+    }
+
+    public ChessMove getMove() {
+        return move;
+    }
+
+    /**
+     * @return the status once the move is made, for the team whose turn it is then
+     */
+    public ChessGame.Status getStatus() {
+        return status;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+}
@@ -0,0 +1,59 @@
+package chess;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.ServerMessage;
+
+public class ChessAdaptersTests {
+
+    private static final Gson GSON = ChessAdapters.register(new GsonBuilder()).create();
+
+    @Test
+    public void gameIsFen() {
+        ChessGame game = ChessGame.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R b - - 3 17");
+        String json = GSON.toJson(game);
+        Assertions.assertEquals("\"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R b - - 3 17\"", json);
+        Assertions.assertEquals(game, GSON.fromJson(json, ChessGame.class));
+    }
+
+    @Test
+    public void boardAndPiece() {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        String json = GSON.toJson(board);
+        Assertions.assertEquals("\"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR\"", json);
+        Assertions.assertEquals(board, GSON.fromJson(json, ChessBoard.class));
+
+        ChessPiece knight = ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT);
+        Assertions.assertEquals("\"n\"", GSON.toJson(knight));
+        Assertions.assertEquals(knight, GSON.fromJson("\"n\"", ChessPiece.class));
+        Assertions.assertNull(GSON.fromJson("null", ChessPiece.class));
+    }
+
+    @Test
+    public void loadGameMessageRoundTrip() {
+        ChessGame game = new ChessGame();
+        game.playMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        LoadGameMessage message = new LoadGameMessage(ServerMessage.ServerMessageType.LOAD_GAME, game);
+
+        String compact = GSON.toJson(message);
+        String reflective = new Gson().toJson(message);
+        Assertions.assertTrue(compact.length() * 10 < reflective.length(), compact + " vs " + reflective.length());
+
+        LoadGameMessage read = GSON.fromJson(compact, LoadGameMessage.class);
+        Assertions.assertEquals(ServerMessage.ServerMessageType.LOAD_GAME, read.getServerMessageType());
+        Assertions.assertEquals(game.toFen(), read.getGame().toFen());
+        Assertions.assertEquals(message.getEvaluation(), read.getEvaluation());
+    }
+
+    @Test
+    public void rejectsBadText() {
+        Assertions.assertThrows(JsonParseException.class, () -> GSON.fromJson("\"8/8/8 w\"", ChessGame.class));
+        Assertions.assertThrows(JsonParseException.class, () -> GSON.fromJson("\"8/8/8/8/8/8/8/8 w\"", ChessBoard.class));
+        Assertions.assertThrows(JsonParseException.class, () -> GSON.fromJson("\"x\"", ChessPiece.class));
+    }
+}
@@ -0,0 +1,166 @@
+package chess;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class DrawRuleTests {
+
+    private static ChessMove move(int fromRow, int fromCol, int toRow, int toCol) {
+        return new ChessMove(new ChessPosition(fromRow, fromCol), new ChessPosition(toRow, toCol), null);
+    }
+
+    private static void shuffleKnights(ChessGame game) throws InvalidMoveException {
+        game.makeMove(move(1, 7, 3, 6));
+        game.makeMove(move(8, 7, 6, 6));
+        game.makeMove(move(3, 6, 1, 7));
+        game.makeMove(move(6, 6, 8, 7));
+    }
+
+    @Test
+    public void threefoldRepetition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        Assertions.assertEquals(1, game.repetitionCount());
+
+        shuffleKnights(game);
+        Assertions.assertEquals(2, game.repetitionCount());
+        Assertions.assertEquals(ChessGame.Status.IN_PROGRESS, game.status());
+
+        shuffleKnights(game);
+        Assertions.assertEquals(3, game.repetitionCount());
+        Assertions.assertEquals(ChessGame.Status.DRAW_BY_REPETITION, game.status());
+        Assertions.assertTrue(game.status().isGameOver());
+
+        game.unmakeMove();
+        Assertions.assertEquals(2, game.repetitionCount());
+        Assertions.assertEquals(ChessGame.Status.IN_PROGRESS, game.status());
+    }
+
+    @Test
+    public void repetitionNeedsSameTeamToMove() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(move(1, 7, 3, 6));
+        game.makeMove(move(8, 7, 6, 6));
+        game.makeMove(move(3, 6, 1, 7));
+        // same pieces as two moves ago, but with black to move instead of white
+        Assertions.assertEquals(1, game.repetitionCount());
+    }
+
+    @Test
+    public void pawnMoveResetsRepetitions() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        shuffleKnights(game);
+        shuffleKnights(game);
+        game.makeMove(move(2, 5, 4, 5));
+        Assertions.assertEquals(1, game.repetitionCount());
+        Assertions.assertEquals(ChessGame.Status.IN_PROGRESS, game.status());
+    }
+
+    @Test
+    public void repetitionsSurviveCopies() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        shuffleKnights(game);
+        ChessGame copy = new ChessGame(game);
+        shuffleKnights(copy);
+        Assertions.assertEquals(ChessGame.Status.DRAW_BY_REPETITION, copy.status());
+        Assertions.assertEquals(2, game.repetitionCount());
+    }
+
+    @Test
+    public void repetitionsSurviveDeepSearches() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        shuffleKnights(game);
+        shuffleKnights(game);
+        ChessGame copy = new ChessGame(game);
+        // far more moves on top than the fifty-move rule looks back over, then all taken back
+        for (int i = 0; i < 60; i++) {
+            copy.playMove(move(1, 7, 3, 6));
+            copy.playMove(move(8, 7, 6, 6));
+            copy.playMove(move(3, 6, 1, 7));
+            copy.playMove(move(6, 6, 8, 7));
+        }
+        for (int i = 0; i < 240; i++) {
+            copy.unmakeMove();
+        }
+        Assertions.assertEquals(3, copy.repetitionCount());
+        Assertions.assertEquals(ChessGame.Status.DRAW_BY_REPETITION, copy.status());
+    }
+
+    @Test
+    public void repetitionsSurviveSaving() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        shuffleKnights(game);
+        Gson gson = new Gson();
+        ChessGame loaded = gson.fromJson(gson.toJson(game), ChessGame.class);
+        Assertions.assertEquals(2, loaded.repetitionCount());
+        shuffleKnights(loaded);
+        Assertions.assertEquals(ChessGame.Status.DRAW_BY_REPETITION, loaded.status());
+    }
+
+    @Test
+    public void setBoardStartsTheCountersOver() throws InvalidMoveException {
+        ChessGame game = ChessGame.fromFen("8/8/8/8/8/8/R7/K6k w - - 90 80");
+        // the rook and the black king step away and back
+        game.makeMove(move(2, 1, 3, 1));
+        game.makeMove(move(1, 8, 2, 8));
+        game.makeMove(move(3, 1, 2, 1));
+        game.makeMove(move(2, 8, 1, 8));
+        Assertions.assertEquals(2, game.repetitionCount());
+
+        game.setBoard(ChessGame.fromFen("8/8/8/8/8/8/R7/K6k w - - 0 1").getBoard());
+        Assertions.assertEquals(0, game.getHalfmoveClock());
+        Assertions.assertEquals(1, game.getFullmoveNumber());
+        Assertions.assertEquals(1, game.repetitionCount());
+
+        // ten quiet moves, which would have taken the old clock past 100
+        for (int row = 3; row <= 7; row++) {
+            game.makeMove(move(row - 1, 1, row, 1));
+            game.makeMove(row % 2 == 1 ? move(1, 8, 2, 8) : move(2, 8, 1, 8));
+        }
+        Assertions.assertEquals(10, game.getHalfmoveClock());
+        Assertions.assertEquals(ChessGame.Status.IN_PROGRESS, game.status());
+    }
+
+    @Test
+    public void fiftyMoveRule() throws InvalidMoveException {
+        ChessGame game = ChessGame.fromFen("8/8/8/8/8/8/R7/K6k w - - 99 80");
+        Assertions.assertEquals(ChessGame.Status.IN_PROGRESS, game.status());
+        game.makeMove(move(2, 1, 3, 1));
+        Assertions.assertEquals(ChessGame.Status.DRAW_BY_FIFTY_MOVES, game.status());
+
+        game.unmakeMove();
+        Assertions.assertEquals(ChessGame.Status.IN_PROGRESS, game.status());
+    }
+
+    @Test
+    public void checkmateBeatsFiftyMoveRule() {
+        ChessGame game = ChessGame.fromFen("R6k/8/6K1/8/8/8/8/8 b - - 100 80");
+        Assertions.assertEquals(ChessGame.Status.CHECKMATE, game.status());
+    }
+
+    @Test
+    public void insufficientMaterial() {
+        Assertions.assertEquals(ChessGame.Status.DRAW_BY_INSUFFICIENT_MATERIAL,
+                ChessGame.fromFen("8/8/4k3/8/8/3K4/8/8 w - - 0 1").status());
+        Assertions.assertEquals(ChessGame.Status.DRAW_BY_INSUFFICIENT_MATERIAL,
+                ChessGame.fromFen("8/8/4k3/8/8/3K4/8/5B2 w - - 0 1").status());
+        Assertions.assertEquals(ChessGame.Status.DRAW_BY_INSUFFICIENT_MATERIAL,
+                ChessGame.fromFen("8/8/4k3/8/8/3K4/8/6n1 w - - 0 1").status());
+        // bishops on c1 and f8 both stand on dark squares
+        Assertions.assertEquals(ChessGame.Status.DRAW_BY_INSUFFICIENT_MATERIAL,
+                ChessGame.fromFen("5b2/8/4k3/8/8/3K4/8/2B5 w - - 0 1").status());
+    }
+
+    @Test
+    public void sufficientMaterial() {
+        // opposite-colored bishops
+        Assertions.assertEquals(ChessGame.Status.IN_PROGRESS,
+                ChessGame.fromFen("2b5/8/4k3/8/8/3K4/8/2B5 w - - 0 1").status());
+        Assertions.assertEquals(ChessGame.Status.IN_PROGRESS,
+                ChessGame.fromFen("8/8/4k3/8/8/3K4/8/1N4n1 w - - 0 1").status());
+        Assertions.assertEquals(ChessGame.Status.IN_PROGRESS,
+                ChessGame.fromFen("8/8/4k3/8/8/3K4/4P3/8 w - - 0 1").status());
+        Assertions.assertEquals(ChessGame.Status.IN_PROGRESS,
+                ChessGame.fromFen("8/8/4k3/8/8/3K4/8/7R w - - 0 1").status());
+    }
+}
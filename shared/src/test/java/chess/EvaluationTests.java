@@ -0,0 +1,40 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class EvaluationTests {
+
+    @Test
+    public void startingPositionIsEven() {
+        Assertions.assertEquals(0, new ChessGame().evaluate());
+    }
+
+    @Test
+    public void mirroredPositionsScoreOpposite() {
+        ChessGame game = ChessGame.fromFen("r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w - - 4 4");
+        ChessGame mirrored = ChessGame.fromFen("rnbqk2r/pppp1ppp/5n2/2b1p3/4P3/2N2N2/PPPP1PPP/R1BQKB1R b - - 4 4");
+        Assertions.assertEquals(-game.evaluate(), mirrored.evaluate());
+    }
+
+    @Test
+    public void materialCounts() {
+        Assertions.assertTrue(ChessGame.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNB1KBNR w - - 0 1").evaluate() < -800);
+        Assertions.assertTrue(ChessGame.fromFen("4k3/8/8/8/8/8/4P3/4K3 w - - 0 1").evaluate() > 50);
+    }
+
+    @Test
+    public void updatedAsMovesAreMade() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        game.makeMove(new ChessMove(new ChessPosition(7, 4), new ChessPosition(5, 4), null));
+        game.makeMove(new ChessMove(new ChessPosition(4, 5), new ChessPosition(5, 4), null));
+        Assertions.assertEquals(ChessGame.fromFen(game.toFen()).evaluate(), game.evaluate());
+        Assertions.assertTrue(game.evaluate() > 50);
+
+        game.unmakeMove();
+        game.unmakeMove();
+        game.unmakeMove();
+        Assertions.assertEquals(0, game.evaluate());
+    }
+}
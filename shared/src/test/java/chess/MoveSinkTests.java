@@ -0,0 +1,69 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class MoveSinkTests {
+
+    @Test
+    public void sinkSeesSameMovesAsList() {
+        ChessGame game = ChessGame.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w - - 0 1");
+        IntMoveList list = new IntMoveList();
+        game.legalMoves(list);
+
+        Set<Integer> seen = new HashSet<>();
+        Assertions.assertTrue(game.legalMoves(seen::add));
+        Assertions.assertEquals(list.size(), seen.size());
+        for (int i = 0; i < list.size(); i++) {
+            Assertions.assertTrue(seen.contains(list.get(i)));
+        }
+    }
+
+    @Test
+    public void sinkCanStopEarly() {
+        ChessGame game = new ChessGame();
+        int[] calls = new int[1];
+        Assertions.assertFalse(game.legalMoves(move -> ++calls[0] < 3));
+        Assertions.assertEquals(3, calls[0]);
+
+        // looking for one particular landing square
+        calls[0] = 0;
+        ChessPosition knight = new ChessPosition(1, 7);
+        int f3 = Bitboards.square(new ChessPosition(3, 6));
+        Assertions.assertFalse(game.validMoves(knight, move -> {
+            calls[0]++;
+            return PackedMove.to(move) != f3;
+        }));
+        Assertions.assertTrue(calls[0] <= 2);
+    }
+
+    @Test
+    public void countMatchesGeneratedMoves() {
+        String[] fens = {
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w - - 0 1",
+                // promotions, with and without captures
+                "n1n5/PPPk4/8/8/8/8/4Kppp/5N1N b - - 0 1",
+                "n1n5/PPPk4/8/8/8/8/4Kppp/5N1N w - - 0 1",
+                // in check
+                "4k3/8/8/8/8/8/4r3/4K3 w - - 0 1",
+        };
+        for (String fen : fens) {
+            ChessGame game = ChessGame.fromFen(fen);
+            Assertions.assertEquals(game.legalMoves().size(), game.legalMoveCount(), fen);
+        }
+    }
+
+    @Test
+    public void pieceMovesThroughSink() {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        ChessPiece pawn = board.getPiece(new ChessPosition(2, 5));
+        int[] count = new int[1];
+        Assertions.assertTrue(pawn.pieceMoves(board, new ChessPosition(2, 5), move -> ++count[0] > 0));
+        Assertions.assertEquals(2, count[0]);
+        Assertions.assertEquals(2, pawn.pieceMoves(board, new ChessPosition(2, 5)).size());
+    }
+}
@@ -0,0 +1,54 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import passoff.chess.TestUtilities;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class PerftTests {
+
+    @Test
+    public void startingPositionCounts() {
+        ChessGame game = new ChessGame();
+
+        Assertions.assertEquals(20, Perft.run(game, 1).nodes());
+        Assertions.assertEquals(400, Perft.run(game, 2).nodes());
+        Assertions.assertEquals(8902, Perft.run(game, 3).nodes());
+        Assertions.assertEquals(197281, Perft.run(game, 4).nodes());
+    }
+
+    @Test
+    public void countLeavesGameUnchanged() {
+        ChessGame game = new ChessGame();
+        Perft.run(game, 3);
+
+        Assertions.assertEquals(new ChessGame(), game);
+    }
+
+    @Test
+    public void parallelMatchesSerial() {
+        ChessGame game = new ChessGame();
+
+        Assertions.assertEquals(Perft.run(game, 4).nodes(), Perft.runParallel(game, 4, ForkJoinPool.commonPool()).nodes());
+    }
+
+    @Test
+    public void endgameCounts() {
+        // "position 3" from the usual perft suite, shallow enough that en passant doesn't come up
+        ChessGame game = new ChessGame();
+        game.setBoard(TestUtilities.loadBoard("""
+                | | | | | | | | |
+                | | |p| | | | | |
+                | | | |p| | | | |
+                |K|P| | | | | |r|
+                | |R| | | |p| |k|
+                | | | | | | | | |
+                | | | | |P| |P| |
+                | | | | | | | | |
+                """));
+
+        Assertions.assertEquals(14, Perft.run(game, 1).nodes());
+        Assertions.assertEquals(191, Perft.run(game, 2).nodes());
+    }
+}
@@ -0,0 +1,73 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PositionCacheTests {
+
+    @Test
+    public void storeAndLookUp() {
+        PositionCache cache = new PositionCache(1);
+        ChessGame game = new ChessGame();
+        IntMoveList moves = new IntMoveList();
+        game.legalMoves(moves);
+        cache.put(game.positionKey(), moves, 0, ChessGame.Status.IN_PROGRESS);
+
+        IntMoveList cached = new IntMoveList();
+        cached.add(PackedMove.of(0, 1, null));
+        Assertions.assertEquals(ChessGame.Status.IN_PROGRESS, cache.get(game.positionKey(), cached));
+        Assertions.assertEquals(moves.size() + 1, cached.size());
+        for (int i = 0; i < moves.size(); i++) {
+            Assertions.assertEquals(moves.get(i), cached.get(i + 1));
+        }
+        Assertions.assertEquals(new PositionCache.Stats(1, 0, 0, 1), cache.stats());
+    }
+
+    @Test
+    public void collisionIsAMiss() {
+        PositionCache cache = new PositionCache(1);
+        IntMoveList moves = new IntMoveList();
+        moves.add(PackedMove.of(12, 28, null));
+        cache.put(5L, moves, 0, ChessGame.Status.CHECK);
+
+        // same slot, different position
+        long other = 5L + cache.capacity();
+        IntMoveList cached = new IntMoveList();
+        Assertions.assertNull(cache.get(other, cached));
+        Assertions.assertTrue(cached.isEmpty());
+        Assertions.assertNull(cache.status(other));
+        Assertions.assertEquals(ChessGame.Status.CHECK, cache.status(5L));
+        Assertions.assertEquals(new PositionCache.Stats(1, 2, 2, 1), cache.stats());
+    }
+
+    @Test
+    public void sharedCacheMatchesGenerator() {
+        long uncached = Perft.count(new ChessGame(), 3);
+        PositionCache.enableShared(1);
+        try {
+            // counting twice reads back every entry the first count stored
+            Assertions.assertEquals(uncached, Perft.count(new ChessGame(), 3));
+            Assertions.assertEquals(uncached, Perft.count(new ChessGame(), 3));
+            Assertions.assertTrue(PositionCache.shared().stats().hitRate() > 0.4);
+
+            ChessGame game = new ChessGame();
+            Assertions.assertEquals(ChessGame.Status.IN_PROGRESS, game.status());
+            Assertions.assertEquals(2, game.validMoves(new ChessPosition(1, 2)).size());
+        } finally {
+            PositionCache.disableShared();
+        }
+    }
+
+    @Test
+    public void configureShared() {
+        try {
+            PositionCache.configureShared(1);
+            Assertions.assertNotNull(PositionCache.shared());
+            PositionCache.configureShared(0);
+            Assertions.assertNull(PositionCache.shared());
+            Assertions.assertThrows(IllegalArgumentException.class, () -> PositionCache.configureShared(-1));
+        } finally {
+            PositionCache.disableShared();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SnapshotTests {
+
+    private static ChessMove move(int fromRow, int fromCol, int toRow, int toCol) {
+        return new ChessMove(new ChessPosition(fromRow, fromCol), new ChessPosition(toRow, toCol), null);
+    }
+
+    @Test
+    public void snapshotMatchesGame() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(move(2, 5, 4, 5));
+        BoardSnapshot snapshot = game.snapshot();
+
+        Assertions.assertEquals(game.toFen(), snapshot.toFen());
+        Assertions.assertEquals(game.positionKey(), snapshot.positionKey());
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, snapshot.getTeamTurn());
+        Assertions.assertEquals(ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN),
+                snapshot.getPiece(new ChessPosition(4, 5)));
+        Assertions.assertNull(snapshot.getPiece(new ChessPosition(2, 5)));
+        Assertions.assertEquals(game, snapshot.toGame());
+    }
+
+    @Test
+    public void keyWorkedOutFromSquares() {
+        String[] fens = {
+                "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b - - 0 1",
+                "8/8/8/8/8/8/R7/K6k w - - 90 80",
+                "4k3/1P6/8/8/8/8/6p1/4K3 b - - 0 60",
+        };
+        for (String fen : fens) {
+            ChessGame game = ChessGame.fromFen(fen);
+            Assertions.assertEquals(game.positionKey(), game.snapshot().positionKey(), fen);
+        }
+    }
+
+    @Test
+    public void snapshotDoesNotChange() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        BoardSnapshot before = game.snapshot();
+        game.makeMove(move(2, 5, 4, 5));
+
+        Assertions.assertNotSame(before, game.snapshot());
+        Assertions.assertEquals(new ChessGame().toFen(), before.toFen());
+        Assertions.assertNotNull(before.getPiece(new ChessPosition(2, 5)));
+        Assertions.assertEquals(before, new ChessGame().snapshot());
+    }
+
+    @Test
+    public void publishedOnSetters() {
+        ChessGame game = new ChessGame();
+        game.snapshot();
+        game.setTeamTurn(ChessGame.TeamColor.BLACK);
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, game.snapshot().getTeamTurn());
+
+        ChessBoard board = new ChessBoard();
+        game.setBoard(board);
+        Assertions.assertNull(game.snapshot().getPiece(new ChessPosition(1, 5)));
+    }
+
+    @Test
+    public void searchMovesAreNotPublished() {
+        ChessGame game = new ChessGame();
+        BoardSnapshot before = game.snapshot();
+        game.playMove(move(2, 5, 4, 5));
+        Assertions.assertSame(before, game.snapshot());
+        game.unmakeMove();
+        Assertions.assertSame(before, game.snapshot());
+    }
+
+    @Test
+    public void readersSeeWholePositions() throws Exception {
+        ChessGame game = new ChessGame();
+        game.snapshot();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> torn = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                // the key was taken with the pieces, so it has to match what is on the squares
+                BoardSnapshot snapshot = game.snapshot();
+                if (snapshot.toGame().positionKey() != snapshot.positionKey()) {
+                    torn.set(snapshot.toFen());
+                }
+            }
+        });
+        reader.start();
+
+        ChessMove[] shuffle = {move(1, 7, 3, 6), move(8, 7, 6, 6), move(3, 6, 1, 7), move(6, 6, 8, 7)};
+        for (int i = 0; i < 2000; i++) {
+            for (ChessMove next : shuffle) {
+                game.makeMove(next);
+            }
+        }
+        done.set(true);
+        reader.join();
+        Assertions.assertNull(torn.get());
+    }
+}
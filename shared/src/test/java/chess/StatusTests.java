@@ -0,0 +1,54 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import passoff.chess.TestUtilities;
+
+public class StatusTests {
+
+    @Test
+    public void newGameInProgress() {
+        Assertions.assertEquals(ChessGame.Status.IN_PROGRESS, new ChessGame().status());
+    }
+
+    @Test
+    public void foolsMateIsCheckmate() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(2, 6), new ChessPosition(3, 6), null));
+        game.makeMove(new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null));
+        game.makeMove(new ChessMove(new ChessPosition(2, 7), new ChessPosition(4, 7), null));
+        Assertions.assertEquals(ChessGame.Status.IN_PROGRESS, game.status());
+
+        game.makeMove(new ChessMove(new ChessPosition(8, 4), new ChessPosition(4, 8), null));
+        Assertions.assertEquals(ChessGame.Status.CHECKMATE, game.status());
+
+        // the cached answer has to be dropped once the position changes
+        game.unmakeMove();
+        Assertions.assertEquals(ChessGame.Status.IN_PROGRESS, game.status());
+    }
+
+    @Test
+    public void checkAndStalemate() {
+        ChessGame game = new ChessGame();
+        game.setBoard(TestUtilities.loadBoard("""
+                |k| | | | | | | |
+                | | |Q| | | | | |
+                | |K| | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                """));
+        game.setTeamTurn(ChessGame.TeamColor.BLACK);
+        Assertions.assertEquals(ChessGame.Status.STALEMATE, game.status());
+
+        game.getBoard().addPiece(new ChessPosition(7, 3), null);
+        game.getBoard().addPiece(new ChessPosition(8, 3), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        Assertions.assertEquals(ChessGame.Status.CHECKMATE, game.status());
+
+        game.getBoard().addPiece(new ChessPosition(6, 2), null);
+        game.getBoard().addPiece(new ChessPosition(1, 1), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        Assertions.assertEquals(ChessGame.Status.CHECK, game.status());
+    }
+}
@@ -0,0 +1,66 @@
+package engine;
+
+import chess.ChessGame;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+public class BitbaseTests {
+
+    private static Bitbase bitbase;
+
+    private static synchronized Bitbase bitbase() throws IOException {
+        if (bitbase == null) {
+            Path directory = Files.createTempDirectory("bitbases");
+            new BitbaseGenerator(ForkJoinPool.commonPool()).writeAll(directory);
+            for (Bitbase.Material material : Bitbase.Material.values()) {
+                directory.resolve(material.fileName()).toFile().deleteOnExit();
+            }
+            directory.toFile().deleteOnExit();
+            bitbase = Bitbase.open(directory);
+        }
+        return bitbase;
+    }
+
+    private static Bitbase.Outcome probe(String fen) throws IOException {
+        return bitbase().probe(ChessGame.fromFen(fen));
+    }
+
+    @Test
+    public void queenAndRookWin() throws IOException {
+        Assertions.assertEquals(Bitbase.Outcome.WIN, probe("8/8/3k4/8/8/8/8/Q3K3 w - - 0 1"));
+        Assertions.assertEquals(Bitbase.Outcome.WIN, probe("8/8/8/8/8/8/8/R3K2k w - - 0 1"));
+        Assertions.assertEquals(Bitbase.Outcome.LOSS, probe("8/8/8/8/8/8/8/R3K2k b - - 0 1"));
+    }
+
+    @Test
+    public void stalematesAndCapturesDraw() throws IOException {
+        Assertions.assertEquals(Bitbase.Outcome.DRAW, probe("k7/2Q5/1K6/8/8/8/8/8 b - - 0 1"));
+        // same stalemate with the colors swapped
+        Assertions.assertEquals(Bitbase.Outcome.DRAW, probe("8/8/8/8/8/1k6/2q5/K7 w - - 0 1"));
+        // the queen is hanging
+        Assertions.assertEquals(Bitbase.Outcome.DRAW, probe("8/8/8/8/8/1k6/8/qK6 w - - 0 1"));
+    }
+
+    @Test
+    public void kingAndPawn() throws IOException {
+        Assertions.assertEquals(Bitbase.Outcome.WIN, probe("8/8/8/8/8/8/4P3/k3K3 w - - 0 1"));
+        // rook pawn with the defending king in the corner
+        Assertions.assertEquals(Bitbase.Outcome.DRAW, probe("k7/8/8/8/8/8/P7/K7 w - - 0 1"));
+        // opposition decides it
+        Assertions.assertEquals(Bitbase.Outcome.WIN, probe("4k3/8/4K3/4P3/8/8/8/8 w - - 0 1"));
+        Assertions.assertEquals(Bitbase.Outcome.DRAW, probe("4k3/8/8/4K3/4P3/8/8/8 b - - 0 1"));
+        Assertions.assertEquals(Bitbase.Outcome.WIN, probe("4k3/8/8/4K3/4P3/8/8/8 w - - 0 1"));
+    }
+
+    @Test
+    public void otherMaterialNotCovered() throws IOException {
+        Assertions.assertNull(probe("8/8/8/8/8/8/8/RR2K2k w - - 0 1"));
+        Assertions.assertNull(probe("8/8/8/8/8/8/8/N3K2k w - - 0 1"));
+        Assertions.assertNull(bitbase().probe(new ChessGame()));
+    }
+}
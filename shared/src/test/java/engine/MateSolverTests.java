@@ -0,0 +1,73 @@
+package engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class MateSolverTests {
+
+    // Qg8+ Rxg8 Nf7#
+    private static final String SMOTHERED = "r6k/6pp/7N/8/8/1Q6/8/6K1 w - - 0 1";
+    // Rg1 followed by Ra8#, the first move isn't a check
+    private static final String QUIET = "7k/8/8/8/8/8/R7/1R5K w - - 0 1";
+
+    @Test
+    public void mateInOne() {
+        MateSolver.Result result = new MateSolver().solve(ChessGame.fromFen("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1"), 3);
+
+        Assertions.assertEquals(1, result.movesToMate());
+        Assertions.assertEquals(List.of(new ChessMove(new ChessPosition(1, 1), new ChessPosition(8, 1), null)), result.line());
+    }
+
+    @Test
+    public void smotheredMateLine() {
+        ChessGame game = ChessGame.fromFen(SMOTHERED);
+        MateSolver.Result result = new MateSolver().solve(game, 3);
+
+        Assertions.assertEquals(2, result.movesToMate());
+        Assertions.assertEquals(List.of(
+                new ChessMove(new ChessPosition(3, 2), new ChessPosition(8, 7), null),
+                new ChessMove(new ChessPosition(8, 1), new ChessPosition(8, 7), null),
+                new ChessMove(new ChessPosition(6, 8), new ChessPosition(7, 6), null)), result.line());
+
+        // the line has to actually mate, and solving leaves the game alone
+        for (ChessMove move : result.line()) {
+            game.playMove(move);
+        }
+        Assertions.assertEquals(ChessGame.Status.CHECKMATE, game.status());
+        Assertions.assertEquals(SMOTHERED, ChessGame.fromFen(SMOTHERED).toFen());
+    }
+
+    @Test
+    public void verifyClaims() {
+        MateSolver solver = new MateSolver();
+        ChessGame game = ChessGame.fromFen(SMOTHERED);
+
+        Assertions.assertTrue(solver.verify(game, 2));
+        Assertions.assertFalse(solver.verify(game, 1));
+        Assertions.assertFalse(solver.verify(new ChessGame(), 2));
+    }
+
+    @Test
+    public void quietFirstMove() {
+        ChessGame game = ChessGame.fromFen(QUIET);
+
+        Assertions.assertFalse(new MateSolver().solve(game, 2).found());
+        Assertions.assertEquals(2, new MateSolver(ForkJoinPool.commonPool(), false).solve(game, 2).movesToMate());
+    }
+
+    @Test
+    public void solveBatch() {
+        List<MateSolver.Result> results = new MateSolver().solveAll(List.of(
+                ChessGame.fromFen(SMOTHERED), new ChessGame(), ChessGame.fromFen("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1")), 2);
+
+        Assertions.assertEquals(2, results.get(0).movesToMate());
+        Assertions.assertFalse(results.get(1).found());
+        Assertions.assertEquals(1, results.get(2).movesToMate());
+    }
+}
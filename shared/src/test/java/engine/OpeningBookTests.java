@@ -0,0 +1,107 @@
+package engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+public class OpeningBookTests {
+
+    private static final ChessMove E4 = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+    private static final ChessMove D4 = new ChessMove(new ChessPosition(2, 4), new ChessPosition(4, 4), null);
+    private static final ChessMove E5 = new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null);
+    private static final ChessMove C5 = new ChessMove(new ChessPosition(7, 3), new ChessPosition(5, 3), null);
+
+    private static OpeningBook writeBook(OpeningBookWriter writer) throws IOException {
+        Path path = Files.createTempFile("book", ".bin");
+        path.toFile().deleteOnExit();
+        writer.write(path);
+        return OpeningBook.open(path);
+    }
+
+    @Test
+    public void lookUpWeightedMoves() throws IOException {
+        OpeningBookWriter writer = new OpeningBookWriter();
+        writer.addLine(List.of(E4, E5), 3);
+        writer.addLine(List.of(E4, C5), 2);
+        writer.addLine(List.of(D4), 1);
+        OpeningBook book = writeBook(writer);
+
+        Assertions.assertEquals(4, book.size());
+        ChessGame game = new ChessGame();
+        Assertions.assertEquals(List.of(new OpeningBook.Entry(E4, 5), new OpeningBook.Entry(D4, 1)), book.lookup(game));
+        Assertions.assertEquals(E4, book.bestMove(game));
+
+        game.playMove(E4);
+        Assertions.assertEquals(List.of(new OpeningBook.Entry(E5, 3), new OpeningBook.Entry(C5, 2)), book.lookup(game));
+
+        game.playMove(C5);
+        Assertions.assertTrue(book.lookup(game).isEmpty());
+        Assertions.assertNull(book.bestMove(game));
+    }
+
+    @Test
+    public void pickFollowsWeights() throws IOException {
+        OpeningBookWriter writer = new OpeningBookWriter();
+        writer.add(new ChessGame(), E4, 1);
+        writer.add(new ChessGame(), D4, 0);
+        OpeningBook book = writeBook(writer);
+
+        Random random = new Random(1);
+        for (int i = 0; i < 20; i++) {
+            Assertions.assertEquals(E4, book.pickMove(new ChessGame(), random));
+        }
+    }
+
+    @Test
+    public void rejectsTruncatedFile() throws IOException {
+        Path path = Files.createTempFile("book", ".bin");
+        path.toFile().deleteOnExit();
+        Files.write(path, new byte[20]);
+        Assertions.assertThrows(IOException.class, () -> OpeningBook.open(path));
+    }
+
+    @Test
+    public void readLines() throws IOException {
+        OpeningBookWriter writer = new OpeningBookWriter();
+        writer.addLines(new BufferedReader(new StringReader("""
+                # comment
+                3 e2e4 e7e5
+
+                2 e2e4 c7c5
+                1 d2d4
+                """)));
+        OpeningBook book = writeBook(writer);
+        Assertions.assertEquals(4, book.size());
+        Assertions.assertEquals(List.of(new OpeningBook.Entry(E4, 5), new OpeningBook.Entry(D4, 1)), book.lookup(new ChessGame()));
+        Assertions.assertEquals("Book moves:\n  e2 e4 (83%)\n  d2 d4 (16%)\n", OpeningBook.describe(book.lookup(new ChessGame())));
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> writer.addLines(new BufferedReader(new StringReader("1 e2e5"))));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> writer.addLines(new BufferedReader(new StringReader("e2e4"))));
+    }
+
+    @Test
+    public void bundledBook() throws IOException {
+        OpeningBook book = OpeningBook.openBundled();
+        ChessGame game = new ChessGame();
+        List<OpeningBook.Entry> first = book.lookup(game);
+        Assertions.assertEquals(E4, first.get(0).move());
+        Assertions.assertEquals(4, first.size());
+
+        // every line in the file is legal, so each position along the main line is in the book
+        game.playMove(E4);
+        Assertions.assertFalse(book.lookup(game).isEmpty());
+        Assertions.assertEquals("No book moves for this position", OpeningBook.describe(List.of()));
+    }
+}
@@ -0,0 +1,58 @@
+package engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SearchTests {
+
+    @Test
+    public void findsMateInOne() {
+        // back rank mate with Ra8
+        ChessGame game = ChessGame.fromFen("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        Search.Result result = new Search(1).search(game, Search.Limits.depth(4));
+
+        Assertions.assertEquals(new ChessMove(new ChessPosition(1, 1), new ChessPosition(8, 1), null), result.bestMove());
+        Assertions.assertTrue(result.isMate());
+        Assertions.assertEquals(Search.MATE - 1, result.score());
+    }
+
+    @Test
+    public void capturesHangingQueen() {
+        ChessGame game = ChessGame.fromFen("4k3/8/8/3q4/8/8/3R4/4K3 w - - 0 1");
+        Search.Result result = new Search(1).search(game, Search.Limits.depth(3));
+
+        Assertions.assertEquals(new ChessMove(new ChessPosition(2, 4), new ChessPosition(5, 4), null), result.bestMove());
+        Assertions.assertTrue(result.score() > 0);
+    }
+
+    @Test
+    public void leavesGameUnchanged() {
+        ChessGame game = new ChessGame();
+        String fen = game.toFen();
+        Search.Result result = new Search(1).search(game, Search.Limits.depth(3));
+
+        Assertions.assertEquals(fen, game.toFen());
+        Assertions.assertEquals(3, result.depth());
+        Assertions.assertTrue(game.legalMoves().contains(result.bestMove()));
+    }
+
+    @Test
+    public void stopsAtNodeLimit() {
+        Search.Result result = new Search(1).search(new ChessGame(), Search.Limits.nodes(5000));
+
+        Assertions.assertTrue(result.nodes() <= 5000);
+        Assertions.assertNotNull(result.bestMove());
+    }
+
+    @Test
+    public void noMovesInCheckmate() {
+        ChessGame game = ChessGame.fromFen("rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w - - 1 3");
+        Search.Result result = new Search(1).search(game, Search.Limits.depth(2));
+
+        Assertions.assertNull(result.bestMove());
+        Assertions.assertEquals(-Search.MATE, result.score());
+    }
+}
@@ -0,0 +1,87 @@
+package websocket;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import websocket.commands.UserGameCommand;
+import websocket.messages.ErrorMessage;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.MoveUpdateMessage;
+import websocket.messages.NotificationMessage;
+import websocket.messages.ServerMessage;
+
+import java.nio.ByteBuffer;
+
+public class BinaryCodecTests {
+
+    @Test
+    public void commandRoundTrip() {
+        ChessMove promotion = new ChessMove(new ChessPosition(7, 2), new ChessPosition(8, 1), ChessPiece.PieceType.KNIGHT);
+        UserGameCommand command = new UserGameCommand(UserGameCommand.CommandType.MAKE_MOVE, "4f1c-token", 300, promotion);
+
+        UserGameCommand read = BinaryCodec.decodeCommand(BinaryCodec.encode(command));
+        Assertions.assertEquals(command, read);
+        Assertions.assertEquals(promotion, read.getChessMove());
+
+        UserGameCommand connect = new UserGameCommand(UserGameCommand.CommandType.CONNECT, null, 1, null);
+        read = BinaryCodec.decodeCommand(BinaryCodec.encode(connect));
+        Assertions.assertEquals(connect, read);
+        Assertions.assertNull(read.getChessMove());
+        Assertions.assertNull(read.getAuthToken());
+    }
+
+    @Test
+    public void loadGameRoundTrip() {
+        ChessGame game = ChessGame.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R b - - 3 17");
+        LoadGameMessage message = new LoadGameMessage(ServerMessage.ServerMessageType.LOAD_GAME, game);
+
+        ByteBuffer frame = BinaryCodec.encode(message);
+        Assertions.assertEquals(71, frame.remaining());
+        LoadGameMessage read = (LoadGameMessage) BinaryCodec.decodeMessage(frame);
+        Assertions.assertEquals(game.toFen(), read.getGame().toFen());
+        Assertions.assertEquals(message.getEvaluation(), read.getEvaluation());
+    }
+
+    @Test
+    public void moveUpdateRoundTrip() throws Exception {
+        ChessGame game = new ChessGame();
+        ChessMove e4 = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        Assertions.assertEquals(0, MoveUpdateMessage.sequence(game));
+        game.makeMove(e4);
+        Assertions.assertEquals(1, MoveUpdateMessage.sequence(game));
+
+        MoveUpdateMessage update = new MoveUpdateMessage(ServerMessage.ServerMessageType.MOVE_UPDATE, e4,
+                game.status(), MoveUpdateMessage.sequence(game));
+        ByteBuffer frame = BinaryCodec.encode(update);
+        Assertions.assertEquals(5, frame.remaining());
+        MoveUpdateMessage read = (MoveUpdateMessage) BinaryCodec.decodeMessage(frame);
+        Assertions.assertEquals(e4, read.getMove());
+        Assertions.assertEquals(ChessGame.Status.IN_PROGRESS, read.getStatus());
+        Assertions.assertEquals(1, read.getSequence());
+
+        ChessGame later = ChessGame.fromFen("8/8/8/8/8/8/R7/K6k b - - 99 80");
+        Assertions.assertEquals(159, MoveUpdateMessage.sequence(later));
+    }
+
+    @Test
+    public void textMessagesRoundTrip() {
+        NotificationMessage notification = new NotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION,
+                "caf\u00e9 made the move: e2e4");
+        NotificationMessage readNotification = (NotificationMessage) BinaryCodec.decodeMessage(BinaryCodec.encode(notification));
+        Assertions.assertEquals(notification.getMessage(), readNotification.getMessage());
+
+        ErrorMessage error = new ErrorMessage(ServerMessage.ServerMessageType.ERROR, "");
+        ErrorMessage readError = (ErrorMessage) BinaryCodec.decodeMessage(BinaryCodec.encode(error));
+        Assertions.assertEquals("", readError.getErrorMessage());
+    }
+
+    @Test
+    public void rejectsBadFrames() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decodeMessage(ByteBuffer.wrap(new byte[]{9})));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decodeMessage(ByteBuffer.wrap(new byte[]{0, 1, 3})));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decodeCommand(ByteBuffer.wrap(new byte[]{1, 5, 20, 'a'})));
+    }
+}